@@ -0,0 +1,72 @@
+package com.bod.accounts.benchmark;
+
+import com.bod.accounts.service.impl.SequenceAccountNumberGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Account number generation for new accounts: the block-allocating generator,
+ * single-threaded and contended, against the random number it replaced. The
+ * sequence is simulated in memory, so only the in-process cost is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountNumberBenchmark {
+
+    private SequenceAccountNumberGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new SequenceAccountNumberGenerator(new InMemorySequence(), true);
+    }
+
+    @Benchmark
+    public long sequenceBlocks() {
+        return generator.nextAccountNumber();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long sequenceBlocksContended() {
+        return generator.nextAccountNumber();
+    }
+
+    @Benchmark
+    public long randomPerCall() {
+        return 1000000000L + new Random().nextInt(900000000);
+    }
+
+    /**
+     * Answers the block reservation query the way Postgres would for a
+     * sequence incrementing by 100.
+     */
+    private static final class InMemorySequence extends JdbcTemplate {
+        private final AtomicLong next = new AtomicLong(190000000L);
+
+        @Override
+        public <T> T queryForObject(String sql, RowMapper<T> rowMapper) {
+            long start = next.getAndAdd(100);
+            ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> (Integer) args[0] == 1 ? start : 100L);
+            try {
+                return rowMapper.mapRow(resultSet, 0);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}
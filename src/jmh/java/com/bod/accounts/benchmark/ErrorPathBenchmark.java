@@ -0,0 +1,70 @@
+package com.bod.accounts.benchmark;
+
+import com.bod.accounts.dto.ErrorResponseDto;
+import com.bod.accounts.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The 404 path of a fetch: an exception thrown {@code depth} frames below the
+ * handler, caught, and rendered as an {@link ErrorResponseDto}. A request
+ * reaches the repository about 120 frames below the servlet container.
+ * {@code stackless} throws {@link ResourceNotFoundException} as it is now;
+ * {@code withStackTrace} throws an exception built the way it used to be, with
+ * {@code String.format} and a filled in stack trace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    private static final String MOBILE_NUMBER = "9278091701";
+
+    @Param({"30", "120"})
+    private int depth;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public byte[] stackless() throws Exception {
+        return render(() -> new ResourceNotFoundException("Customer", "mobileNumber", MOBILE_NUMBER));
+    }
+
+    @Benchmark
+    public byte[] withStackTrace() throws Exception {
+        return render(() -> new RuntimeException(String.format("%s not found with the given input data %s : '%s'",
+                "Customer", "mobileNumber", MOBILE_NUMBER)));
+    }
+
+    private byte[] render(Supplier<RuntimeException> exception) throws Exception {
+        try {
+            throwAt(depth, exception);
+            throw new IllegalStateException("Nothing was thrown");
+        } catch (RuntimeException e) {
+            return objectMapper.writeValueAsBytes(new ErrorResponseDto("uri=/api/accounts/fetch",
+                    HttpStatus.NOT_FOUND, e.getMessage(), LocalDateTime.now()));
+        }
+    }
+
+    private static int throwAt(int depth, Supplier<RuntimeException> exception) {
+        if (depth == 0) {
+            throw exception.get();
+        }
+        return throwAt(depth - 1, exception) + 1;
+    }
+
+}
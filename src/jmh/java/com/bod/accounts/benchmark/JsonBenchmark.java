@@ -0,0 +1,63 @@
+package com.bod.accounts.benchmark;
+
+import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.dto.ErrorResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encoding and decoding of the response bodies, with an
+ * {@link ObjectMapper} configured like the one Spring Boot hands to Spring MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private CustomerDto customerDto;
+    private ErrorResponseDto errorResponseDto;
+    private byte[] customerJson;
+    private byte[] errorResponseJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        customerDto = new CustomerDto("Hemant", "hemantraghav@gmail.com", "9278091701",
+                new AccountsDto(1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", null), null);
+        errorResponseDto = new ErrorResponseDto("uri=/api/accounts/fetch", HttpStatus.NOT_FOUND,
+                "Customer not found with the given input data mobileNumber : '9278091701'", LocalDateTime.now());
+        customerJson = objectMapper.writeValueAsBytes(customerDto);
+        errorResponseJson = objectMapper.writeValueAsBytes(errorResponseDto);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws Exception {
+        return objectMapper.writeValueAsBytes(customerDto);
+    }
+
+    @Benchmark
+    public CustomerDto deserializeCustomer() throws Exception {
+        return objectMapper.readValue(customerJson, CustomerDto.class);
+    }
+
+    @Benchmark
+    public byte[] serializeErrorResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(errorResponseDto);
+    }
+
+    @Benchmark
+    public Object deserializeErrorResponse() throws Exception {
+        return objectMapper.readTree(errorResponseJson);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.bod.accounts.benchmark;
+
+import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.entity.Accounts;
+import com.bod.accounts.entity.Customer;
+import com.bod.accounts.mapper.AccountsMapper;
+import com.bod.accounts.mapper.CustomerMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO and back again through {@link CustomerMapper} and {@link AccountsMapper}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private Customer customer;
+    private Accounts accounts;
+
+    @Setup
+    public void setUp() {
+        customer = new Customer();
+        customer.setCustomerId(6L);
+        customer.setName("Hemant");
+        customer.setEmail("hemantraghav@gmail.com");
+        customer.setMobileNumber("9278091701");
+
+        accounts = new Accounts();
+        accounts.setCustomerId(6L);
+        accounts.setAccountNumber(1191861191L);
+        accounts.setAccountType("Savings");
+        accounts.setBranchAddress("Bank of Delhi, Connaught place new delhi");
+    }
+
+    @Benchmark
+    public CustomerDto toDto() {
+        CustomerDto customerDto = CustomerMapper.mapToCustomerDto(customer, new CustomerDto());
+        customerDto.setAccountsDto(AccountsMapper.mapToAccountsDto(accounts, new AccountsDto()));
+        return customerDto;
+    }
+
+    @Benchmark
+    public Accounts roundTrip() {
+        CustomerDto customerDto = toDto();
+        CustomerMapper.mapToCustomer(customerDto, new Customer());
+        return AccountsMapper.mapToAccounts(customerDto.getAccountsDto(), new Accounts());
+    }
+
+}
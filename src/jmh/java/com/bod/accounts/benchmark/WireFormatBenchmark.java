@@ -0,0 +1,93 @@
+package com.bod.accounts.benchmark;
+
+import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.BatchFetchResponseDto;
+import com.bod.accounts.dto.CustomerDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding and decoding of a single fetch and of a 100 customer batch fetch in
+ * each of the response formats the controller offers, with mappers built like
+ * the ones Spring Boot hands to Spring MVC. The encoded sizes, plain and
+ * gzipped, are printed once per format before the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private CustomerDto customerDto;
+    private BatchFetchResponseDto batchResponse;
+    private byte[] customerBytes;
+    private byte[] batchBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = switch (format) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        customerDto = customer(9278091701L);
+        List<CustomerDto> customers = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            customers.add(customer(9278091701L + i));
+        }
+        batchResponse = new BatchFetchResponseDto(customers, List.of("9278091699"));
+        customerBytes = objectMapper.writeValueAsBytes(customerDto);
+        batchBytes = objectMapper.writeValueAsBytes(batchResponse);
+        System.out.printf("%n%s: customer %d bytes (%d gzipped), batch of 100 %d bytes (%d gzipped)%n", format,
+                customerBytes.length, gzippedSize(customerBytes), batchBytes.length, gzippedSize(batchBytes));
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws Exception {
+        return objectMapper.writeValueAsBytes(customerDto);
+    }
+
+    @Benchmark
+    public CustomerDto deserializeCustomer() throws Exception {
+        return objectMapper.readValue(customerBytes, CustomerDto.class);
+    }
+
+    @Benchmark
+    public byte[] serializeBatch() throws Exception {
+        return objectMapper.writeValueAsBytes(batchResponse);
+    }
+
+    @Benchmark
+    public BatchFetchResponseDto deserializeBatch() throws Exception {
+        return objectMapper.readValue(batchBytes, BatchFetchResponseDto.class);
+    }
+
+    private static CustomerDto customer(long mobileNumber) {
+        return new CustomerDto("Hemant", "hemantraghav@gmail.com", Long.toString(mobileNumber),
+                new AccountsDto(1191861191L + mobileNumber % 1000, "Savings",
+                        "Bank of Delhi, Connaught place new delhi", 3L), 2L);
+    }
+
+    private static int gzippedSize(byte[] bytes) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(bytes);
+        }
+        return gzipped.size();
+    }
+
+}
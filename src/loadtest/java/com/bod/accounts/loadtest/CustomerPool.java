@@ -0,0 +1,98 @@
+package com.bod.accounts.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Customers known to exist on the instance under load. Slots are handed out in
+ * order, so mobile numbers never repeat; a deleted customer leaves an empty slot
+ * behind that random picks skip.
+ */
+final class CustomerPool {
+
+    private static final long FIRST_MOBILE_NUMBER = 6_000_000_000L;
+    private static final int PICK_ATTEMPTS = 16;
+
+    private final AtomicReferenceArray<Customer> slots;
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+
+    CustomerPool(int capacity) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return a customer that is not registered yet, to be {@link #publish published} once it is
+     */
+    Customer allocate() {
+        int index = allocated.getAndIncrement();
+        if (index >= slots.length()) {
+            throw new IllegalStateException("Customer pool of " + slots.length() + " exhausted");
+        }
+        return new Customer(index, String.format("%010d", FIRST_MOBILE_NUMBER + index));
+    }
+
+    void publish(Customer customer) {
+        slots.set(customer.index, customer);
+        published.accumulateAndGet(customer.index + 1, Math::max);
+    }
+
+    /**
+     * @return a random registered customer, or null if none was found
+     */
+    Customer pick() {
+        int bound = published.get();
+        for (int i = 0; bound > 0 && i < PICK_ATTEMPTS; i++) {
+            Customer customer = slots.get(ThreadLocalRandom.current().nextInt(bound));
+            if (customer != null) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a random registered customer, removed from the pool so nothing else picks it, or null
+     */
+    Customer take() {
+        int bound = published.get();
+        for (int i = 0; bound > 0 && i < PICK_ATTEMPTS; i++) {
+            int index = ThreadLocalRandom.current().nextInt(bound);
+            Customer customer = slots.get(index);
+            if (customer != null && slots.compareAndSet(index, customer, null)) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    Customer find(String mobileNumber) {
+        int index = (int) (Long.parseLong(mobileNumber) - FIRST_MOBILE_NUMBER);
+        return index >= 0 && index < published.get() ? slots.get(index) : null;
+    }
+
+    static final class Customer {
+        private final int index;
+        private final String mobileNumber;
+        private volatile Long accountNumber;
+
+        private Customer(int index, String mobileNumber) {
+            this.index = index;
+            this.mobileNumber = mobileNumber;
+        }
+
+        String mobileNumber() {
+            return mobileNumber;
+        }
+
+        Long accountNumber() {
+            return accountNumber;
+        }
+
+        void accountNumber(Long accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+    }
+
+}
@@ -0,0 +1,468 @@
+package com.bod.accounts.loadtest;
+
+import com.bod.accounts.AccountsApplication;
+import com.bod.accounts.loadtest.CustomerPool.Customer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.sun.management.OperatingSystemMXBean;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * End-to-end load harness for the {@code /api/accounts} endpoints.
+ * <p>
+ * Starts the application in-process on a random port against an embedded
+ * Postgres (or the database given with {@code jdbcUrl}), seeds customers through
+ * {@code /create/batch}, then drives a weighted mix of create, fetch, update and
+ * delete calls at a fixed rate. The load is open: requests are sent on schedule
+ * whether or not earlier ones have answered, and latency is measured from the
+ * time a request was due rather than when it was sent, so a stalled instance
+ * shows up in the percentiles instead of quietly lowering the rate.
+ * <p>
+ * Requests the application sheds, with 429 from the per-client rate limit or
+ * 503 from the concurrency limit, are counted in columns of their own and left
+ * out of the latency distribution and the errors. All requests come from one
+ * address, so the per-client rate limit is off unless {@code clientRate} is
+ * given.
+ * <p>
+ * The report ends with the average fetch response size as received, and the
+ * process CPU time per request while driving. The application and the harness
+ * share the process, so the CPU time includes the client side.
+ * <p>
+ * Options are passed as {@code key=value} arguments:
+ * <ul>
+ *     <li>{@code jdbcUrl}, {@code jdbcUser}, {@code jdbcPassword} - database to run against, embedded when absent</li>
+ *     <li>{@code seed=50000} - customers created before the run</li>
+ *     <li>{@code rate=200} - requests per second</li>
+ *     <li>{@code warmup=10} - seconds driven but not recorded</li>
+ *     <li>{@code duration=60} - seconds recorded</li>
+ *     <li>{@code mix=fetch:80,create:8,update:8,delete:4} - weight of each operation</li>
+ *     <li>{@code histogramDir=target/loadtest} - where the full latency distribution of every operation is written</li>
+ *     <li>{@code maxP99Ms} - exit with status 1 when any operation's p99 exceeds it</li>
+ *     <li>{@code format=json} - response format asked for on fetches, {@code json}, {@code cbor} or {@code smile}</li>
+ *     <li>{@code gzip=false} - ask for gzipped responses on fetches</li>
+ *     <li>{@code clientRate=0} - {@code accounts.admission.client-rate} to run with, 0 for no per-client limit</li>
+ * </ul>
+ */
+public final class LoadHarness {
+
+    private static final String BASE_PATH = "/api/accounts";
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int SEED_CONCURRENCY = 4;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(executor)
+            .build();
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> rateLimited = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> unavailable = new EnumMap<>(Operation.class);
+    private final LongAdder fetchedResponses = new LongAdder();
+    private final LongAdder fetchedBytes = new LongAdder();
+    private ObjectMapper fetchMapper;
+    private String fetchAccept;
+    private boolean gzip;
+    private long driveCpuNanos;
+    private long driveRequests;
+    private CustomerPool customerPool;
+    private String baseUrl;
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(operation, new LongAdder());
+            rateLimited.put(operation, new LongAdder());
+            unavailable.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.exit(new LoadHarness(options).run());
+    }
+
+    private int run() throws Exception {
+        int rate = intOption("rate", 200);
+        int warmup = intOption("warmup", 10);
+        int duration = intOption("duration", 60);
+        int seed = intOption("seed", 50_000);
+        Map<Operation, Integer> mix = Operation.parseMix(options.getOrDefault("mix", "fetch:80,create:8,update:8,delete:4"));
+        customerPool = new CustomerPool(seed + rate * (warmup + duration) + 1);
+        String format = options.getOrDefault("format", "json");
+        switch (format) {
+            case "json" -> fetchMapper = objectMapper;
+            case "cbor" -> fetchMapper = new CBORMapper();
+            case "smile" -> fetchMapper = new SmileMapper();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        }
+        fetchAccept = "cbor".equals(format) ? "application/cbor"
+                : "smile".equals(format) ? "application/x-jackson-smile" : "application/json";
+        gzip = Boolean.parseBoolean(options.getOrDefault("gzip", "false"));
+
+        EmbeddedPostgres embeddedPostgres = null;
+        ConfigurableApplicationContext context = null;
+        try {
+            String jdbcUrl = options.get("jdbcUrl");
+            if (jdbcUrl == null) {
+                embeddedPostgres = EmbeddedPostgres.builder().start();
+                jdbcUrl = embeddedPostgres.getJdbcUrl("postgres", "postgres");
+            }
+            context = new SpringApplicationBuilder(AccountsApplication.class).run(
+                    "--server.port=0",
+                    "--spring.datasource.url=" + jdbcUrl,
+                    "--spring.datasource.username=" + options.getOrDefault("jdbcUser", "postgres"),
+                    "--spring.datasource.password=" + options.getOrDefault("jdbcPassword", "postgres"),
+                    "--spring.jpa.show-sql=false",
+                    "--spring.main.banner-mode=off",
+                    "--accounts.admission.client-rate=" + options.getOrDefault("clientRate", "0"),
+                    "--logging.level.root=WARN");
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + BASE_PATH;
+
+            long seedStart = System.nanoTime();
+            seed(seed);
+            learnAccountNumbers();
+            System.out.printf("Seeded %d customers in %.1f s%n", seed, (System.nanoTime() - seedStart) / 1e9);
+
+            drive(mix, rate, warmup, duration);
+            return report(duration);
+        } finally {
+            executor.shutdownNow();
+            if (context != null) {
+                context.close();
+            }
+            if (embeddedPostgres != null) {
+                embeddedPostgres.close();
+            }
+        }
+    }
+
+    private void seed(int count) throws Exception {
+        List<Future<?>> batches = new ArrayList<>();
+        ExecutorService seeders = Executors.newFixedThreadPool(SEED_CONCURRENCY, Thread.ofVirtual().factory());
+        try {
+            for (int created = 0; created < count; created += SEED_BATCH_SIZE) {
+                List<Customer> customers = new ArrayList<>();
+                for (int i = created; i < Math.min(count, created + SEED_BATCH_SIZE); i++) {
+                    customers.add(customerPool.allocate());
+                }
+                batches.add(seeders.submit(() -> {
+                    ArrayNode body = objectMapper.createArrayNode();
+                    customers.forEach(customer -> body.add(customerJson(customer)));
+                    HttpResponse<InputStream> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/create/batch"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body))));
+                    try (InputStream in = response.body()) {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("Seeding failed with status " + response.statusCode());
+                        }
+                        JsonNode results = objectMapper.readTree(in);
+                        for (int i = 0; i < customers.size(); i++) {
+                            if ("201".equals(results.get(i).path("statusCode").asText())) {
+                                customerPool.publish(customers.get(i));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } finally {
+            seeders.shutdown();
+        }
+    }
+
+    /**
+     * Reads back the account number of every seeded customer through the
+     * export, so updates do not need a fetch of their own first.
+     */
+    private void learnAccountNumbers() throws Exception {
+        HttpResponse<InputStream> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/export?format=ndjson")).GET());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    rememberAccountNumber(objectMapper.readTree(line));
+                }
+            }
+        }
+    }
+
+    private void drive(Map<Operation, Integer> mix, int rate, int warmup, int duration) {
+        Operation[] schedule = mix.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Operation[]::new);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(duration);
+        System.out.printf("Driving %d requests/s for %d s warmup and %d s recorded%n", rate, warmup, duration);
+
+        OperatingSystemMXBean os = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+        long cpuStart = os.getProcessCpuTime();
+        long i = 0;
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long due = start; due < end; due = start + ++i * interval) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+                long intendedStart = due;
+                requests.execute(() -> execute(operation, intendedStart, intendedStart >= recordFrom));
+            }
+        }
+        driveCpuNanos = os.getProcessCpuTime() - cpuStart;
+        driveRequests = i;
+    }
+
+    private void execute(Operation operation, long intendedStart, boolean recorded) {
+        int status;
+        try {
+            status = switch (operation) {
+                case CREATE -> create();
+                case FETCH -> fetch();
+                case UPDATE -> update();
+                case DELETE -> delete();
+            };
+        } catch (Exception e) {
+            status = -1;
+        }
+        if (!recorded) {
+            return;
+        }
+        if (status == 429) {
+            rateLimited.get(operation).increment();
+        } else if (status == 503) {
+            unavailable.get(operation).increment();
+        } else {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+            recorders.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            if (!operation.isSuccess(status)) {
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private int create() throws Exception {
+        Customer customer = customerPool.allocate();
+        HttpResponse<InputStream> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/create"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(customerJson(customer)))));
+        response.body().close();
+        if (Operation.CREATE.isSuccess(response.statusCode())) {
+            customerPool.publish(customer);
+        }
+        return response.statusCode();
+    }
+
+    private int fetch() throws Exception {
+        Customer customer = customerPool.pick();
+        if (customer == null) {
+            return -1;
+        }
+        HttpResponse<InputStream> response = sendFetch(customer);
+        JsonNode fetched = readFetched(response);
+        if (Operation.FETCH.isSuccess(response.statusCode())) {
+            rememberAccountNumber(fetched);
+        }
+        return response.statusCode();
+    }
+
+    /**
+     * Customers created during the run have no known account number until they
+     * are fetched; an update picking one of them fetches it first, and that
+     * fetch is part of the update's latency.
+     */
+    private int update() throws Exception {
+        Customer customer = customerPool.pick();
+        if (customer == null) {
+            return -1;
+        }
+        if (customer.accountNumber() == null) {
+            HttpResponse<InputStream> lookup = sendFetch(customer);
+            JsonNode fetched = readFetched(lookup);
+            if (!Operation.FETCH.isSuccess(lookup.statusCode())) {
+                return lookup.statusCode();
+            }
+            rememberAccountNumber(fetched);
+        }
+        ObjectNode body = customerJson(customer);
+        body.putObject("accountsDto")
+                .put("accountNumber", customer.accountNumber())
+                .put("accountType", "Savings")
+                .put("branchAddress", "Branch " + ThreadLocalRandom.current().nextInt(100));
+        HttpResponse<InputStream> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/update"))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body))));
+        response.body().close();
+        return response.statusCode();
+    }
+
+    private int delete() throws Exception {
+        Customer customer = customerPool.take();
+        if (customer == null) {
+            return -1;
+        }
+        HttpResponse<InputStream> response = send(HttpRequest.newBuilder(
+                URI.create(baseUrl + "/delete?mobileNumber=" + customer.mobileNumber())).DELETE());
+        response.body().close();
+        return response.statusCode();
+    }
+
+    private int report(int duration) throws IOException {
+        Path histogramDir = Path.of(options.getOrDefault("histogramDir", "target/loadtest"));
+        Files.createDirectories(histogramDir);
+        String maxP99Option = options.get("maxP99Ms");
+        boolean failed = false;
+
+        System.out.printf("%n%-8s %9s %9s %9s %9s %9s %9s %7s %7s %7s%n",
+                "op", "count", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "429", "503");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            long shed = rateLimited.get(operation).sum() + unavailable.get(operation).sum();
+            if (histogram.getTotalCount() == 0) {
+                if (shed > 0) {
+                    System.out.printf("%-8s %9d %9s %9s %9s %9s %9s %7d %7d %7d%n",
+                            operation.name().toLowerCase(), 0, "-", "-", "-", "-", "-", 0,
+                            rateLimited.get(operation).sum(), unavailable.get(operation).sum());
+                }
+                continue;
+            }
+            double p99 = histogram.getValueAtPercentile(99) / 1000.0;
+            System.out.printf("%-8s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %7d %7d%n",
+                    operation.name().toLowerCase(), histogram.getTotalCount(),
+                    histogram.getTotalCount() / (double) duration,
+                    histogram.getValueAtPercentile(50) / 1000.0, p99,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    errors.get(operation).sum(), rateLimited.get(operation).sum(), unavailable.get(operation).sum());
+            try (PrintStream out = new PrintStream(Files.newOutputStream(
+                    histogramDir.resolve(operation.name().toLowerCase() + ".hgrm")), false, StandardCharsets.UTF_8)) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+            if (maxP99Option != null && p99 > Double.parseDouble(maxP99Option)) {
+                System.out.printf("%s p99 of %.2f ms exceeds %s ms%n", operation.name().toLowerCase(), p99, maxP99Option);
+                failed = true;
+            }
+        }
+        long responses = fetchedResponses.sum();
+        if (responses > 0) {
+            System.out.printf("%nFetch responses as %s%s: %.0f bytes on average%n", fetchAccept,
+                    gzip ? " with gzip" : "", fetchedBytes.sum() / (double) responses);
+        }
+        if (driveRequests > 0) {
+            System.out.printf("Process CPU time: %.3f ms per request%n", driveCpuNanos / 1e6 / driveRequests);
+        }
+        System.out.printf("Latency distributions written to %s%n", histogramDir.toAbsolutePath());
+        return failed ? 1 : 0;
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private HttpResponse<InputStream> sendFetch(Customer customer) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create(baseUrl + "/fetch?mobileNumber=" + customer.mobileNumber())).GET();
+        request.header("Accept", fetchAccept);
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        return send(request);
+    }
+
+    /**
+     * @return the fetched body decoded in the format asked for, counting the
+     * bytes received before any gzip is undone
+     */
+    private JsonNode readFetched(HttpResponse<InputStream> response) throws IOException {
+        byte[] body;
+        try (InputStream in = response.body()) {
+            body = in.readAllBytes();
+        }
+        fetchedResponses.increment();
+        fetchedBytes.add(body.length);
+        if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        return fetchMapper.readTree(body);
+    }
+
+    private ObjectNode customerJson(Customer customer) {
+        return objectMapper.createObjectNode()
+                .put("name", "Load Customer")
+                .put("email", "c" + customer.mobileNumber() + "@load.test")
+                .put("mobileNumber", customer.mobileNumber());
+    }
+
+    private void rememberAccountNumber(JsonNode customerJson) {
+        JsonNode accountNumber = customerJson.path("accountsDto").path("accountNumber");
+        Customer customer = customerPool.find(customerJson.path("mobileNumber").asText());
+        if (customer != null && accountNumber.isNumber()) {
+            customer.accountNumber(accountNumber.asLong());
+        }
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+}
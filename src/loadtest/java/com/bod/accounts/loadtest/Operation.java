@@ -0,0 +1,51 @@
+package com.bod.accounts.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code /api/accounts} calls the harness drives, with the statuses that
+ * count as a success for each of them.
+ */
+enum Operation {
+
+    CREATE(201),
+    FETCH(200),
+    UPDATE(200),
+    DELETE(200);
+
+    private final int expectedStatus;
+
+    Operation(int expectedStatus) {
+        this.expectedStatus = expectedStatus;
+    }
+
+    boolean isSuccess(int status) {
+        return status == expectedStatus;
+    }
+
+    /**
+     * @param mix - Weights as {@code fetch:80,create:8,update:8,delete:4}; operations left out are not driven
+     * @return the weight of every operation, in declaration order
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight but got " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + parts[0]);
+            }
+            weights.put(valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Mix " + mix + " has no weight");
+        }
+        return weights;
+    }
+
+}
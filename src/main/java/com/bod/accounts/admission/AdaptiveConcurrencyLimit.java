@@ -0,0 +1,109 @@
+package com.bod.accounts.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Limit on the requests running at once that follows the latency they see,
+ * additive increase and multiplicative decrease as in TCP congestion control.
+ * A request that finishes within the latency threshold while at least half the
+ * limit is in use raises the limit by {@code 1 / limit}, so about one per
+ * limit's worth of requests. One that takes longer, or fails with a server
+ * error, multiplies it by the backoff factor, at most once per such latency so
+ * that a burst of slow requests counts as one signal. The limit stays between
+ * its minimum and maximum.
+ * <p>
+ * Requests that would go over the limit are refused rather than queued: when
+ * the database slows down the limit shrinks to what it can serve in time, and
+ * everything past that is turned away at once instead of piling up in the
+ * server. Lower priority requests can be held to a share of the limit, which
+ * leaves the rest to the others. Requests that are slow by nature can be
+ * released against a threshold of their own. All state is atomic; nothing
+ * blocks.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoff;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime() - TimeUnit.DAYS.toNanos(1));
+
+    /**
+     * @param initialLimit - Limit to start from
+     * @param minLimit - Lowest the limit goes
+     * @param maxLimit - Highest the limit goes
+     * @param latencyThresholdNanos - Latency above which a request counts as a sign of overload
+     * @param backoff - Factor the limit is multiplied by on overload, between 0 and 1
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos, double backoff) {
+        if (minLimit < 1 || minLimit > maxLimit || backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("Need 1 <= min <= max and 0 < backoff < 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoff = backoff;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.clamp(initialLimit, minLimit, maxLimit)));
+    }
+
+    /**
+     * @param share - Share of the limit the request may use, up to 1
+     * @return true if the request may run; it then has to call {@link #release}
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit() * share));
+        while (true) {
+            int running = inFlight.get();
+            if (running >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(running, running + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos - How long the request took
+     * @param failed - Whether it failed in a way that points at overload, such as a server error
+     */
+    public void release(long latencyNanos, boolean failed) {
+        release(latencyNanos, latencyThresholdNanos, failed);
+    }
+
+    /**
+     * @param latencyNanos - How long the request took
+     * @param latencyThresholdNanos - Latency above which this kind of request counts as a sign of overload
+     * @param failed - Whether it failed in a way that points at overload, such as a server error
+     */
+    public void release(long latencyNanos, long latencyThresholdNanos, boolean failed) {
+        int running = inFlight.getAndDecrement();
+        if (failed || latencyNanos > latencyThresholdNanos) {
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            if (now - last >= Math.min(latencyNanos, latencyThresholdNanos) && lastDecrease.compareAndSet(last, now)) {
+                update(limit -> Math.max(minLimit, limit * backoff));
+            }
+        } else if (running * 2 >= limit()) {
+            update(limit -> Math.min(maxLimit, limit + 1 / limit));
+        }
+    }
+
+    public double limit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void update(DoubleUnaryOperator change) {
+        limitBits.updateAndGet(bits -> Double.doubleToLongBits(change.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.bod.accounts.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket refilled at a fixed rate, kept as the single {@code long} of
+ * the generic cell rate algorithm: the time at which the bucket would be full
+ * again. Taking a token moves that time one refill interval on, and is refused
+ * when it would end up more than {@code burst} intervals ahead of now. A take
+ * is one compare-and-set, retried only when another thread took a token in
+ * between, so callers never block.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param ratePerSecond - Tokens added per second
+     * @param burst - Tokens the bucket holds when full
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000 / ratePerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @param now - Current {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is there
+     */
+    public long tryTake(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+}
@@ -12,10 +12,15 @@ public final class AccountsConstants {
     public static final String  MESSAGE_201 = "Account created successfully";
     public static final String  STATUS_200 = "200";
     public static final String  MESSAGE_200 = "Request processed successfully";
+    public static final String  STATUS_400 = "400";
     public static final String  STATUS_417 = "417";
     public static final String  MESSAGE_417_UPDATE= "Update operation failed. Please try again or contact Dev team";
     public static final String  MESSAGE_417_DELETE= "Delete operation failed. Please try again or contact Dev team";
     public static final String  STATUS_500 = "500";
     public static final String  MESSAGE_500 = "An error occurred. Please try again or contact Dev team";
+    public static final String  ACCOUNTS_CACHE = "accounts";
+    public static final String  APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final int     MAX_BATCH_SIZE = 1000;
+    public static final int     MAX_PAGE_SIZE = 500;
 
 }
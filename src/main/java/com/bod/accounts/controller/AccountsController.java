@@ -1,25 +1,48 @@
 package com.bod.accounts.controller;
 
 import com.bod.accounts.constants.AccountsConstants;
+import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.AccountsPageDto;
+import com.bod.accounts.dto.BatchFetchResponseDto;
+import com.bod.accounts.dto.BatchResponseDto;
 import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.dto.CustomerPatchDto;
 import com.bod.accounts.dto.ErrorResponseDto;
 import com.bod.accounts.dto.ResponseDto;
+import com.bod.accounts.feed.SseChangeFeed;
+import com.bod.accounts.service.ExportFormat;
+import com.bod.accounts.service.IAccountsExportService;
 import com.bod.accounts.service.IAccountsService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 
 @Tag(
@@ -27,12 +50,22 @@ import org.springframework.web.bind.annotation.*;
         description = "CRUD REST APIs in Bank of Delhi to CREATE, UPDATE, FETCH AND DELETE account details"
 )
 @RestController
-@RequestMapping(path="/api/accounts", produces = {MediaType.APPLICATION_JSON_VALUE})
+@RequestMapping(path="/api/accounts", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+        AccountsConstants.APPLICATION_SMILE_VALUE})
 @AllArgsConstructor
 @Validated
 public class AccountsController {
 
+    private static final MediaType APPLICATION_SMILE = MediaType.valueOf(AccountsConstants.APPLICATION_SMILE_VALUE);
+    /**
+     * Formats of the fetched and patched details, in the order of {@code produces}
+     */
+    private static final List<MediaType> DETAILS_FORMATS = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR, APPLICATION_SMILE);
+
     private IAccountsService iAccountsService;
+    private IAccountsExportService iAccountsExportService;
+    private SseChangeFeed changeFeed;
 
     @Operation(
             summary = "Create Account REST API",
@@ -60,15 +93,47 @@ public class AccountsController {
                 .body(new ResponseDto(AccountsConstants.STATUS_201, AccountsConstants.MESSAGE_201));
     }
 
+    @Operation(
+            summary = "Create Accounts in Batch REST API",
+            description = "REST API to create up to 1000 new Customers & Accounts inside Bank of Delhi(BOD) in one call"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK, with the outcome of every item"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    }
+    )
+    @PostMapping("/create/batch")
+    public ResponseEntity<List<BatchResponseDto>> createAccounts(@RequestBody
+                                                                 @Size(min = 1, max = AccountsConstants.MAX_BATCH_SIZE,
+                                                                         message = "Batch must contain between 1 and 1000 customers")
+                                                                 List<CustomerDto> customerDtos) {
+        List<BatchResponseDto> results = iAccountsService.createAccounts(customerDtos);
+        return ResponseEntity.status(HttpStatus.OK).body(results);
+    }
+
     @Operation(
             summary = "Fetch Account Details REST API",
-            description = "REST API to fetch Customer &  Account details based on a mobile number"
+            description = "REST API to fetch Customer &  Account details based on a mobile number; "
+                    + "send the ETag back as If-None-Match to get 304 while they are unchanged"
     )
     @ApiResponses({
             @ApiResponse(
                     responseCode = "200",
                     description = "HTTP Status OK"
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "HTTP Status Not Modified"
+            ),
             @ApiResponse(
                     responseCode = "500",
                     description = "HTTP Status Internal Server Error",
@@ -81,9 +146,86 @@ public class AccountsController {
     @GetMapping("/fetch")
     public ResponseEntity<CustomerDto> fetchAccountDetails(@RequestParam
                                                            @Pattern(regexp="(^$|[0-9]{10})",message = "Mobile number must be 10 digits")
-                                                           String mobileNumber) {
+                                                           String mobileNumber,
+                                                           @Parameter(hidden = true)
+                                                           @RequestHeader(name = HttpHeaders.ACCEPT, required = false)
+                                                           String accept) {
         CustomerDto customerDto = iAccountsService.fetchAccount(mobileNumber);
-        return ResponseEntity.status(HttpStatus.OK).body(customerDto);
+        MediaType format = detailsFormat(accept);
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .contentType(format)
+                .eTag(eTag(customerDto, format))
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache())
+                .body(customerDto);
+    }
+
+    @Operation(
+            summary = "List Accounts REST API",
+            description = "REST API to page through the accounts of a branch, optionally of one account type, "
+                    + "in account number order"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "HTTP Status Bad Request, the page token was not handed out by this API",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    }
+    )
+    @GetMapping("/list")
+    public ResponseEntity<AccountsPageDto> listAccounts(@RequestParam
+                                                        @NotEmpty(message = "BranchAddress can not be a null or empty")
+                                                        String branchAddress,
+                                                        @RequestParam(required = false) String accountType,
+                                                        @RequestParam(required = false) String pageToken,
+                                                        @RequestParam(defaultValue = "50")
+                                                        @Min(value = 1, message = "Page size must be at least 1")
+                                                        @Max(value = AccountsConstants.MAX_PAGE_SIZE, message = "Page size must be at most 500")
+                                                        int pageSize) {
+        AccountsPageDto page = iAccountsService.listAccounts(branchAddress, accountType, pageToken, pageSize);
+        return ResponseEntity.status(HttpStatus.OK).body(page);
+    }
+
+    @Operation(
+            summary = "Fetch Accounts in Batch REST API",
+            description = "REST API to fetch Customer &  Account details of up to 1000 mobile numbers in one call"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK, with the details found and the mobile numbers not found"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    }
+    )
+    @PostMapping("/fetch/batch")
+    public ResponseEntity<BatchFetchResponseDto> fetchAccounts(@RequestBody
+                                                               @Size(min = 1, max = AccountsConstants.MAX_BATCH_SIZE,
+                                                                       message = "Batch must contain between 1 and 1000 mobile numbers")
+                                                               List<String> mobileNumbers) {
+        BatchFetchResponseDto results = iAccountsService.fetchAccounts(mobileNumbers);
+        return ResponseEntity.status(HttpStatus.OK).body(results);
     }
 
     @Operation(
@@ -122,6 +264,56 @@ public class AccountsController {
         }
     }
 
+    @Operation(
+            summary = "Patch Account Details REST API",
+            description = "REST API to change only the given Customer &  Account fields based on a mobile number, "
+                    + "provided they are still at the versions the change was made against"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "HTTP Status Not Found",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "HTTP Status Conflict, the details were changed since they were fetched",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    }
+    )
+    @PatchMapping("/update")
+    public ResponseEntity<CustomerDto> patchAccountDetails(@RequestParam
+                                                           @Pattern(regexp="(^$|[0-9]{10})",message = "Mobile number must be 10 digits")
+                                                           String mobileNumber,
+                                                           @Valid @RequestBody CustomerPatchDto customerPatchDto,
+                                                           @Parameter(hidden = true)
+                                                           @RequestHeader(name = HttpHeaders.ACCEPT, required = false)
+                                                           String accept) {
+        CustomerDto customerDto = iAccountsService.patchAccount(mobileNumber, customerPatchDto);
+        MediaType format = detailsFormat(accept);
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(format)
+                .eTag(eTag(customerDto, format))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(customerDto);
+    }
+
     @Operation(
             summary = "Delete Account & Customer Details REST API",
             description = "REST API to delete Customer &  Account details based on a mobile number"
@@ -160,5 +352,108 @@ public class AccountsController {
         }
     }
 
+    @Operation(
+            summary = "Export Accounts REST API",
+            description = "REST API to stream every Customer & Account of Bank of Delhi(BOD) as NDJSON or CSV"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    }
+    )
+    @GetMapping(path = "/export", produces = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<StreamingResponseBody> exportAccounts(@RequestParam(defaultValue = "ndjson")
+                                                                @Pattern(regexp = "(?i)(ndjson|csv)", message = "Format must be ndjson or csv")
+                                                                String format) {
+        ExportFormat exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        StreamingResponseBody body = outputStream -> iAccountsExportService.exportAccounts(exportFormat, outputStream);
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("accounts." + exportFormat.getFileExtension()).build().toString())
+                .body(body);
+    }
+
+    @Operation(
+            summary = "Account Changes REST API",
+            description = "Server-sent events of every Customer & Account created, updated or deleted in Bank of Delhi(BOD), "
+                    + "resumable with Last-Event-ID or after"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            )
+    }
+    )
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAccountChanges(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                                           @RequestParam(required = false) Long after) {
+        return changeFeed.subscribe(lastEventId != null ? lastEventId : after);
+    }
+
+    /**
+     * Strong validator of the details: every update bumps the version of the
+     * row it changes, and a customer registered again gets a new account
+     * number. The CBOR and Smile bodies are other representations and carry
+     * the format in the tag, so a cache holding one of them cannot revalidate
+     * it for a client that asked for another. Spring answers a matching
+     * If-None-Match with 304 and writes no body, so a cached fetch is neither
+     * rebuilt nor serialized.
+     *
+     * @param customerDto - Customer and Account details as returned
+     * @param format - Format the details are written in
+     * @return the ETag of the details
+     */
+    private static String eTag(CustomerDto customerDto, MediaType format) {
+        AccountsDto accountsDto = customerDto.getAccountsDto();
+        String suffix = MediaType.APPLICATION_CBOR.equals(format) ? ";cbor"
+                : APPLICATION_SMILE.equals(format) ? ";smile" : "";
+        return "\"" + (accountsDto == null ? "-" : accountsDto.getAccountNumber() + "." + accountsDto.getVersion())
+                + "." + customerDto.getVersion() + suffix + "\"";
+    }
+
+    /**
+     * Picks the format of the details the way Spring MVC would from the
+     * {@code produces} of this controller, so the ETag can name it before the
+     * body is written. The most specific acceptable type wins, and JSON when
+     * nothing acceptable is produced; the response then states it.
+     *
+     * @param accept - Accept header of the request, if any
+     * @return the format to write the details in
+     */
+    private static MediaType detailsFormat(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptable);
+        for (MediaType mediaType : acceptable) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType format : DETAILS_FORMATS) {
+                if (mediaType.isCompatibleWith(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
 
 }
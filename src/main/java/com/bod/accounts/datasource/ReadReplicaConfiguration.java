@@ -0,0 +1,77 @@
+package com.bod.accounts.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the streaming replicas listed in
+ * {@code accounts.read-replicas.urls}, and everything else to the primary of
+ * {@code spring.datasource}. Without replicas none of this is set up and Spring
+ * Boot's DataSource is used as before.
+ * <p>
+ * The DataSource is a {@link LazyConnectionDataSourceProxy}, which only takes a
+ * connection at the first statement, when it knows whether the transaction is
+ * read-only, and then takes it from the {@link ReadReplicaDataSource}. Replica
+ * pools copy the {@code spring.datasource.hikari} settings and credentials, and
+ * have their own size and a short connection timeout so a replica that is down
+ * costs a read little before it falls back to the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("!'${accounts.read-replicas.urls:}'.isBlank()")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    public ReadReplicaDataSource readReplicaDataSource(DataSourceProperties properties,
+                                                       Environment environment,
+                                                       MeterRegistry meterRegistry,
+                                                       @Value("${accounts.read-replicas.urls}") List<String> urls,
+                                                       @Value("${accounts.read-replicas.pool-size:10}") int poolSize,
+                                                       @Value("${accounts.read-replicas.connection-timeout:1s}") Duration connectionTimeout,
+                                                       @Value("${accounts.read-replicas.max-lag:5s}") Duration maxLag,
+                                                       @Value("${accounts.read-replicas.check-interval:2s}") Duration checkInterval) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setPoolName("replica-" + replicas.size());
+            config.setJdbcUrl(url.trim());
+            config.setReadOnly(true);
+            config.setMaximumPoolSize(poolSize);
+            config.setConnectionTimeout(connectionTimeout.toMillis());
+            // a replica that is down at start-up is checked again later instead of failing the start
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(config.getPoolName(), new HikariDataSource(config));
+        }
+        return new ReadReplicaDataSource(primary, replicas, maxLag, checkInterval, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaDataSource readReplicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(readReplicaDataSource.getPrimary());
+        dataSource.setReadOnlyDataSource(readReplicaDataSource);
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.bod.accounts.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Read-only side of the {@code LazyConnectionDataSourceProxy} set up by
+ * {@link ReadReplicaConfiguration}: hands out connections of the replicas in
+ * turn, or of the primary when no replica is fit to read from.
+ * <p>
+ * Every {@code accounts.read-replicas.check-interval} each replica is asked how
+ * far its replay is behind; one that answers within the connection timeout and
+ * is at most {@code accounts.read-replicas.max-lag} behind takes reads. Until a
+ * replica has passed its first check it takes none. A replica that fails to
+ * hand out a connection is taken out right away and the read goes to the
+ * primary. Reads run through {@link #onPrimary} go to the primary regardless.
+ * <p>
+ * Owns the pools it routes to and closes them on shutdown. Publishes the
+ * {@code accounts.datasource.reads} counter, tagged by target, and the
+ * {@code accounts.datasource.replica.lag} gauge per replica, NaN while it is down.
+ */
+@Slf4j
+public class ReadReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    /**
+     * Seconds the replica's replay is behind. A server that is not in recovery,
+     * or has replayed all it received, is not behind. Null if it cannot tell.
+     */
+    private static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE extract(epoch FROM now() - pg_last_xact_replay_timestamp()) END";
+    private static final ThreadLocal<Boolean> ON_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final int checkTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checks = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("read-replica-check").daemon().factory());
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private volatile Replica[] available = new Replica[0];
+
+    /**
+     * @param primary - DataSource of the primary, for reads no replica can take
+     * @param replicas - DataSources of the replicas by name
+     * @param maxLag - How far behind a replica may be and still take reads
+     * @param checkInterval - Time between two checks of the replicas, zero to only check on request
+     */
+    public ReadReplicaDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                 Duration checkInterval, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.checkTimeoutSeconds = (int) Math.max(1, checkInterval.toSeconds());
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            Gauge.builder("accounts.datasource.replica.lag", replica, r -> r.healthy ? r.lagSeconds : Double.NaN)
+                    .tag("replica", name).baseUnit("seconds")
+                    .description("How far the replica's replay is behind the primary").register(meterRegistry);
+        });
+        this.replicaReads = Counter.builder("accounts.datasource.reads").tag("target", "replica")
+                .description("Read-only connections handed out").register(meterRegistry);
+        this.primaryReads = Counter.builder("accounts.datasource.reads").tag("target", "primary")
+                .description("Read-only connections handed out").register(meterRegistry);
+        if (checkInterval.isPositive()) {
+            checks.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs the read with the primary as read-only DataSource, for reads that
+     * have to see a write the replicas may not have replayed yet.
+     *
+     * @param read - Read to run, which opens its own read-only transaction
+     * @return what the read returned
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        if (ON_PRIMARY.get() != null) {
+            return read.get();
+        }
+        ON_PRIMARY.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            ON_PRIMARY.remove();
+        }
+    }
+
+    /**
+     * @return the DataSource of the primary
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica[] candidates = available;
+        if (ON_PRIMARY.get() == null && candidates.length > 0) {
+            Replica replica = candidates[Math.floorMod(next.getAndIncrement(), candidates.length)];
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} did not hand out a connection, reading from the primary until it recovers",
+                        replica.name, e);
+                replica.healthy = false;
+                updateAvailable();
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the credentials of their pools");
+    }
+
+    /**
+     * Asks every replica how far behind it is, and takes in or out the ones that changed.
+     */
+    synchronized void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean wasAvailable = replica.isAvailable(maxLagSeconds);
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(checkTimeoutSeconds);
+                try (ResultSet lag = statement.executeQuery(LAG_SQL)) {
+                    lag.next();
+                    double lagSeconds = lag.getDouble(1);
+                    replica.lagSeconds = lag.wasNull() ? Double.POSITIVE_INFINITY : lagSeconds;
+                    replica.healthy = true;
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+                if (wasAvailable) {
+                    log.warn("Replica {} failed its check, reading from the others or the primary", replica.name, e);
+                }
+            }
+            if (!wasAvailable && replica.isAvailable(maxLagSeconds)) {
+                log.info("Replica {} takes reads, {} seconds behind", replica.name, replica.lagSeconds);
+            } else if (wasAvailable && replica.healthy && !replica.isAvailable(maxLagSeconds)) {
+                log.warn("Replica {} is {} seconds behind, reading from the others or the primary",
+                        replica.name, replica.lagSeconds);
+            }
+        }
+        updateAvailable();
+    }
+
+    private void updateAvailable() {
+        available = replicas.stream().filter(replica -> replica.isAvailable(maxLagSeconds)).toArray(Replica[]::new);
+    }
+
+    @Override
+    public void close() {
+        checks.shutdownNow();
+        for (Replica replica : replicas) {
+            closeQuietly(replica.dataSource);
+        }
+        closeQuietly(primary);
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Could not close {}", dataSource, e);
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile double lagSeconds = Double.POSITIVE_INFINITY;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable(double maxLagSeconds) {
+            return healthy && lagSeconds <= maxLagSeconds;
+        }
+    }
+
+}
@@ -36,4 +36,10 @@ public class AccountsDto {
             description = "BOD branch address", example = "123 NewYork"
     )
     private String branchAddress;
+
+    @Schema(
+            description = "Version of the account details, to send back with a PATCH", example = "0",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private Long version;
 }
@@ -0,0 +1,27 @@
+package com.bod.accounts.dto;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Schema(
+        name = "AccountsPage",
+        description = "Schema to hold one page of Accounts, ordered by account number"
+)
+@Data @AllArgsConstructor
+public class AccountsPageDto {
+
+    @Schema(
+            description = "Accounts of this page"
+    )
+    private List<AccountsDto> accounts;
+
+    @Schema(
+            description = "Token to pass as pageToken for the next page, absent on the last page", example = "MTE5MTg2MTE5MQ"
+    )
+    private String nextPageToken;
+
+}
@@ -0,0 +1,38 @@
+package com.bod.accounts.dto;
+
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(
+        name = "AccountsPatch",
+        description = "Schema to hold the Account fields to change; fields left out are kept"
+)
+public class AccountsPatchDto {
+
+    @Size(min = 1, max = 100, message = "AccountType can not be empty")
+    @Schema(
+            description = "Account type of BOD account", example = "Savings"
+    )
+    private String accountType;
+
+    @Size(min = 1, max = 200, message = "BranchAddress can not be empty")
+    @Schema(
+            description = "BOD branch address", example = "123 NewYork"
+    )
+    private String branchAddress;
+
+    @NotNull(message = "Version is required to change the account details")
+    @Schema(
+            description = "Version of the account details the change was made against, as last fetched", example = "0"
+    )
+    private Long version;
+}
@@ -0,0 +1,28 @@
+package com.bod.accounts.dto;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Schema(
+        name = "BatchFetchResponse",
+        description = "Schema to hold the Customer and Account details found for a batch of mobile numbers"
+)
+@Data @AllArgsConstructor @NoArgsConstructor
+public class BatchFetchResponseDto {
+
+    @Schema(
+            description = "Details of every mobile number found, in the order they were asked for"
+    )
+    private List<CustomerDto> accounts;
+
+    @Schema(
+            description = "Mobile Numbers without a customer or account", example = "[\"9345432123\"]"
+    )
+    private List<String> missingMobileNumbers;
+
+}
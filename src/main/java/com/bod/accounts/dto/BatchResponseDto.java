@@ -0,0 +1,30 @@
+package com.bod.accounts.dto;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Schema(
+        name = "BatchResponse",
+        description = "Schema to hold the outcome of one item of a batch request"
+)
+@Data @AllArgsConstructor
+public class BatchResponseDto {
+
+    @Schema(
+            description = "Mobile Number of the customer the item refers to", example = "9345432123"
+    )
+    private String mobileNumber;
+
+    @Schema(
+            description = "Status code of the item"
+    )
+    private String statusCode;
+
+    @Schema(
+            description = "Status message of the item"
+    )
+    private String statusMsg;
+
+}
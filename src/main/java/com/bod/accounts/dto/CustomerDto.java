@@ -43,4 +43,10 @@ public class CustomerDto {
             description = "Account details of the Customer"
     )
     private AccountsDto accountsDto;
+
+    @Schema(
+            description = "Version of the customer details, to send back with a PATCH", example = "0",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private Long version;
 }
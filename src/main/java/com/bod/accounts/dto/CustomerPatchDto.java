@@ -0,0 +1,59 @@
+package com.bod.accounts.dto;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(
+        name = "CustomerPatch",
+        description = "Schema to hold the Customer and Account fields to change; fields left out are kept"
+)
+public class CustomerPatchDto {
+
+    @Schema(
+            description = "Name of the customer", example = "Eazy Bytes"
+    )
+    @Size(min = 5, max = 30, message = "The length of the customer name should be between 5 and 30")
+    private String name;
+
+    @Schema(
+            description = "Email address of the customer", example = "tutor@eazybytes.com"
+    )
+    @Email(message = "Email address should be a valid value")
+    private String email;
+
+    @Schema(
+            description = "New Mobile Number of the customer", example = "9345432123"
+    )
+    @Pattern(regexp = "[0-9]{10}", message = "Mobile number must be 10 digits")
+    private String mobileNumber;
+
+    @Schema(
+            description = "Version of the customer details the change was made against, as last fetched", example = "0"
+    )
+    private Long version;
+
+    @Schema(
+            description = "Account fields to change"
+    )
+    @Valid
+    private AccountsPatchDto accountsDto;
+
+    @JsonIgnore
+    @Schema(hidden = true)
+    @AssertTrue(message = "Version is required to change the customer details")
+    public boolean isVersionPresent() {
+        return version != null || (name == null && email == null && mobileNumber == null);
+    }
+}
@@ -6,7 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(value = HttpStatus.BAD_REQUEST)
-public class CustomerAlreadyExistsException extends RuntimeException {
+public class CustomerAlreadyExistsException extends DomainException {
 
     public CustomerAlreadyExistsException(String message) {
         super(message);
@@ -0,0 +1,17 @@
+package com.bod.accounts.exception;
+
+/**
+ * Expected outcome of a request that the service reports by throwing, such as
+ * an unknown mobile number or an outdated version. These are answered with a
+ * 4xx response and never logged, and most requests from scrapers end in one,
+ * so they are created without a stack trace: filling one in walks every frame
+ * from the servlet container down to the repository and costs more than the
+ * lookup that failed. They are not suppressible either.
+ */
+public abstract class DomainException extends RuntimeException {
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+
+}
@@ -3,6 +3,7 @@ package com.bod.accounts.exception;
 
 
 import com.bod.accounts.dto.ErrorResponseDto;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -40,36 +41,47 @@ public class GlobalExceptionHandler  extends ResponseEntityExceptionHandler {
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponseDto> handleGlobalException(Exception exception,
                                                                   WebRequest webRequest) {
-        ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
-                webRequest.getDescription(false),
-                HttpStatus.INTERNAL_SERVER_ERROR,
-                exception.getMessage(),
-                LocalDateTime.now()
-        );
-        return new ResponseEntity<>(errorResponseDTO, HttpStatus.INTERNAL_SERVER_ERROR);
+        return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, exception.getMessage(), webRequest);
     }
 
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<ErrorResponseDto> handleResourceNotFoundException(ResourceNotFoundException exception,
                                                                             WebRequest webRequest) {
-        ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
-                webRequest.getDescription(false),
-                HttpStatus.NOT_FOUND,
-                exception.getMessage(),
-                LocalDateTime.now()
-        );
-        return new ResponseEntity<>(errorResponseDTO, HttpStatus.NOT_FOUND);
+        return errorResponse(HttpStatus.NOT_FOUND, exception.getMessage(), webRequest);
     }
 
     @ExceptionHandler(CustomerAlreadyExistsException.class)
     public ResponseEntity<ErrorResponseDto> handleCustomerAlreadyExistsException(CustomerAlreadyExistsException exception, WebRequest webRequest){
-        ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
-                webRequest.getDescription(false),
-                HttpStatus.BAD_REQUEST,
-                exception.getMessage(),
-                LocalDateTime.now()
-        );
-        return new ResponseEntity<>(errorResponseDTO, HttpStatus.BAD_REQUEST);
+        return errorResponse(HttpStatus.BAD_REQUEST, exception.getMessage(), webRequest);
+    }
+
+    @ExceptionHandler(InvalidPageTokenException.class)
+    public ResponseEntity<ErrorResponseDto> handleInvalidPageTokenException(InvalidPageTokenException exception, WebRequest webRequest){
+        return errorResponse(HttpStatus.BAD_REQUEST, exception.getMessage(), webRequest);
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<ErrorResponseDto> handleVersionConflictException(VersionConflictException exception, WebRequest webRequest){
+        return errorResponse(HttpStatus.CONFLICT, exception.getMessage(), webRequest);
+    }
+
+    /**
+     * A versioned update that found the row changed since it was read, in between the read and the write
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponseDto> handleOptimisticLockingFailureException(OptimisticLockingFailureException exception, WebRequest webRequest){
+        return errorResponse(HttpStatus.CONFLICT, "The record was changed by another request; fetch it again and retry", webRequest);
+    }
+
+    /**
+     * @param status - Status answered with, also written into the body
+     * @param message - Error message for the client
+     * @param webRequest - Request that failed, for its path
+     * @return the error response every handler answers with
+     */
+    private static ResponseEntity<ErrorResponseDto> errorResponse(HttpStatus status, String message, WebRequest webRequest) {
+        return new ResponseEntity<>(new ErrorResponseDto(webRequest.getDescription(false), status, message,
+                LocalDateTime.now()), status);
     }
 
 }
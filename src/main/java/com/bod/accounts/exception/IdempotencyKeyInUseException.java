@@ -0,0 +1,15 @@
+package com.bod.accounts.exception;
+
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class IdempotencyKeyInUseException extends DomainException {
+
+    public IdempotencyKeyInUseException(String key) {
+        super("A request with Idempotency-Key '" + key + "' is still running; retry it later");
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.bod.accounts.exception;
+
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyMismatchException extends DomainException {
+
+    public IdempotencyKeyMismatchException(String key) {
+        super("Idempotency-Key '" + key + "' was already used for a different request");
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.bod.accounts.exception;
+
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidPageTokenException extends DomainException {
+
+    public InvalidPageTokenException(String pageToken) {
+        super("Page token '" + pageToken + "' is not one this service handed out; start again without one");
+    }
+
+}
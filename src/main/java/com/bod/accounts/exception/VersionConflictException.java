@@ -0,0 +1,16 @@
+package com.bod.accounts.exception;
+
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class VersionConflictException extends DomainException {
+
+    public VersionConflictException(String resourceName, String fieldName, String fieldValue, Long expectedVersion, Long currentVersion) {
+        super(resourceName + " with the given input data " + fieldName + " : '" + fieldValue + "' is at version "
+                + currentVersion + ", not " + expectedVersion + "; fetch it again and retry");
+    }
+
+}
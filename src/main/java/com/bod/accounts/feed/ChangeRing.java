@@ -0,0 +1,88 @@
+package com.bod.accounts.feed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The last {@code capacity} events of the change feed, in the order of their
+ * sequence, which only goes up but may skip numbers. Appending over a full
+ * ring overwrites the oldest event. Readers keep their own cursor, the
+ * sequence of the last event they have seen, so the ring holds the only copy
+ * of an event however many subscribers there are.
+ */
+final class ChangeRing {
+
+    private final FeedEvent[] events;
+    private final int mask;
+    private long appended;
+    private long lastSequence;
+    private long completeAfter;
+
+    /**
+     * @param capacity - Number of events kept, rounded up to a power of two
+     * @param lastSequence - Sequence of the last event before the first one appended
+     */
+    ChangeRing(int capacity, long lastSequence) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.events = new FeedEvent[size];
+        this.mask = size - 1;
+        this.lastSequence = lastSequence;
+        this.completeAfter = lastSequence;
+    }
+
+    /**
+     * @param sequence - Position of the event in the feed, above every sequence appended before
+     * @param data - Event payload, serialised once for every subscriber
+     */
+    synchronized void append(long sequence, String data) {
+        if (sequence <= lastSequence) {
+            throw new IllegalArgumentException("Sequence " + sequence + " is not after " + lastSequence);
+        }
+        int slot = (int) (appended & mask);
+        if (appended >= events.length) {
+            completeAfter = events[slot].sequence();
+        }
+        events[slot] = new FeedEvent(sequence, data);
+        appended++;
+        lastSequence = sequence;
+    }
+
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @param cursor - Sequence of the last event the reader has seen
+     * @param max - Most events to return
+     * @return the events after the cursor, oldest first, or null if some of them are no longer held
+     */
+    synchronized List<FeedEvent> after(long cursor, int max) {
+        if (cursor < completeAfter) {
+            return null;
+        }
+        long oldest = Math.max(0, appended - events.length);
+        long low = oldest;
+        long high = appended;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (events[(int) (middle & mask)].sequence() <= cursor) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<FeedEvent> after = new ArrayList<>((int) Math.min(max, appended - low));
+        for (long position = low; position < appended && after.size() < max; position++) {
+            after.add(events[(int) (position & mask)]);
+        }
+        return after;
+    }
+
+    /**
+     * @param sequence - Position of the event in the feed
+     * @param data - Event payload, serialised once for every subscriber
+     */
+    record FeedEvent(long sequence, String data) {
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.bod.accounts.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Change feed of the customers and accounts created, updated and deleted
+ * through any instance, sent to subscribers as server-sent events. The feed
+ * reads the committed rows of {@code account_change_history}, which every
+ * instance's change journal writes to, every {@code accounts.feed.poll-interval};
+ * an event's SSE id is its {@code change_id}. The journal writes one batch at
+ * a time across all instances, so the ids become visible in order and every
+ * instance sends the same events under the same ids. A subscriber that
+ * reconnects to any instance with {@code Last-Event-ID} (or {@code after})
+ * gets every change after it.
+ * <p>
+ * The last {@code accounts.feed.capacity} events are kept once, in a
+ * {@link ChangeRing}; a subscriber is only a cursor into it, and one that is
+ * further behind is sent the older events straight from the table. Nothing is
+ * sent from the polling thread: new events wake every subscriber that is not
+ * already being sent to, and a virtual thread sends it what it has not seen
+ * and ends, so a slow connection holds up no one else and no thread waits on
+ * an idle subscriber. A comment is sent every {@code accounts.feed.heartbeat}
+ * so closed connections are noticed.
+ * <p>
+ * Publishes the {@code accounts.feed.subscribers} gauge and the
+ * {@code accounts.feed.catch.up} counter of events read from the table for
+ * subscribers behind the ring.
+ */
+@Slf4j
+@Component
+public class SseChangeFeed {
+
+    private static final int MAX_EVENTS_PER_SEND = 256;
+    private static final String LAST_CHANGE_SQL = "SELECT coalesce(max(change_id), 0) FROM account_change_history";
+    private static final String CHANGES_AFTER_SQL = "SELECT change_id, entity, entity_id, operation, before_values, "
+            + "after_values, changed_at, changed_by FROM account_change_history WHERE change_id > ? "
+            + "ORDER BY change_id LIMIT ?";
+
+    private final ChangeRing ring;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("change-feed-poller").daemon().factory());
+    private final Counter catchUp;
+
+    public SseChangeFeed(JdbcTemplate jdbcTemplate,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${accounts.feed.capacity:16384}") int capacity,
+                         @Value("${accounts.feed.poll-interval:250ms}") Duration pollInterval,
+                         @Value("${accounts.feed.timeout:30m}") Duration timeout,
+                         @Value("${accounts.feed.heartbeat:15s}") Duration heartbeat) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ring = new ChangeRing(capacity, jdbcTemplate.queryForObject(LAST_CHANGE_SQL, Long.class));
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.catchUp = Counter.builder("accounts.feed.catch.up")
+                .description("Events read from the change history for subscribers behind the events held")
+                .register(meterRegistry);
+        Gauge.builder("accounts.feed.subscribers", subscribers, Set::size)
+                .description("Open change feed connections").register(meterRegistry);
+        scheduler.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends the changes committed since the last poll to the ring.
+     */
+    private void poll() {
+        try {
+            boolean appended = false;
+            List<ChangeRing.FeedEvent> events;
+            do {
+                events = read(ring.lastSequence());
+                events.forEach(event -> ring.append(event.sequence(), event.data()));
+                appended |= !events.isEmpty();
+            } while (events.size() == MAX_EVENTS_PER_SEND);
+            if (appended) {
+                subscribers.forEach(this::wake);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read the change history for the change feed", e);
+        }
+    }
+
+    /**
+     * @param cursor - Change id of the last event already read
+     * @return up to {@link #MAX_EVENTS_PER_SEND} events after the cursor, oldest first
+     */
+    private List<ChangeRing.FeedEvent> read(long cursor) {
+        return jdbcTemplate.query(CHANGES_AFTER_SQL, (rs, rowNum) -> toEvent(rs), cursor, MAX_EVENTS_PER_SEND);
+    }
+
+    private ChangeRing.FeedEvent toEvent(ResultSet rs) throws SQLException {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("entity", rs.getString("entity"));
+        event.put("entityId", rs.getLong("entity_id"));
+        event.put("operation", rs.getString("operation"));
+        event.put("changedAt", rs.getObject("changed_at", LocalDateTime.class));
+        event.put("changedBy", rs.getString("changed_by"));
+        try {
+            event.put("before", readJson(rs.getString("before_values")));
+            event.put("after", readJson(rs.getString("after_values")));
+            return new ChangeRing.FeedEvent(rs.getLong("change_id"), objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Change " + rs.getLong("change_id") + " is not valid JSON", e);
+        }
+    }
+
+    private Object readJson(String json) throws JsonProcessingException {
+        return json == null ? null : objectMapper.readTree(json);
+    }
+
+    /**
+     * @param after - Change id of the last event the subscriber has seen, null to only get new events
+     * @return the emitter the events are sent through
+     */
+    public SseEmitter subscribe(Long after) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, after == null ? ring.lastSequence() : after);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        wake(subscriber);
+        return emitter;
+    }
+
+    /**
+     * @return change id of the last event read from the change history
+     */
+    public long lastSequence() {
+        return ring.lastSequence();
+    }
+
+    private void wake(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            boolean sent = false;
+            List<ChangeRing.FeedEvent> events;
+            while (!(events = eventsAfter(subscriber.cursor)).isEmpty()) {
+                for (ChangeRing.FeedEvent event : events) {
+                    subscriber.emitter.send(SseEmitter.event().id(Long.toString(event.sequence())).name("change")
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                    subscriber.cursor = event.sequence();
+                }
+                sent = true;
+            }
+            if (subscriber.heartbeat && !sent) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            subscriber.heartbeat = false;
+        } catch (IOException | IllegalStateException e) {
+            // the connection is gone or already completed; the emitter callbacks drop the subscriber
+            subscribers.remove(subscriber);
+            return;
+        } catch (DataAccessException e) {
+            // the next poll or heartbeat tries again
+            log.warn("Could not read the change history for a subscriber at {}", subscriber.cursor, e);
+            return;
+        } finally {
+            subscriber.sending.set(false);
+        }
+        if (ring.lastSequence() > subscriber.cursor) {
+            wake(subscriber);
+        }
+    }
+
+    /**
+     * @param cursor - Change id of the last event the subscriber has seen
+     * @return the next events from the ring, or from the table when the ring no longer has them
+     */
+    private List<ChangeRing.FeedEvent> eventsAfter(long cursor) {
+        List<ChangeRing.FeedEvent> events = ring.after(cursor, MAX_EVENTS_PER_SEND);
+        if (events != null) {
+            return events;
+        }
+        events = read(cursor);
+        catchUp.increment(events.size());
+        return events;
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat = true;
+            wake(subscriber);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        scheduler.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdown();
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long cursor;
+        private volatile boolean heartbeat;
+
+        private Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+
+}
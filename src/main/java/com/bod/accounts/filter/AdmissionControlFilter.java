@@ -0,0 +1,185 @@
+package com.bod.accounts.filter;
+
+import com.bod.accounts.admission.AdaptiveConcurrencyLimit;
+import com.bod.accounts.admission.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the {@code /api/} requests, before anything else
+ * touches them. Two checks, both answered at once when they fail:
+ * <ul>
+ *     <li>when {@code accounts.admission.client-rate} is set, every client gets
+ *     a {@link TokenBucket} of that many requests a second, bursting to
+ *     {@code accounts.admission.client-burst}; over it the request gets 429.
+ *     Clients are named by the {@link ClientResolver}, so a caller cannot get a
+ *     fresh bucket by sending a new name.</li>
+ *     <li>the requests running at once are held to an
+ *     {@link AdaptiveConcurrencyLimit} that shrinks when requests take longer
+ *     than {@code accounts.admission.latency-threshold} or fail with a 5xx;
+ *     over it the request gets 503. Batch creates and fetches are measured
+ *     against {@code accounts.admission.batch-latency-threshold} instead, and
+ *     the time a request waited for a running one with the same
+ *     {@code Idempotency-Key} is not counted, so neither shrinks the limit
+ *     while the database keeps up. Reads only get
+ *     {@code accounts.admission.read-share} of the limit, so writes are still
+ *     let in after reads start being turned away.</li>
+ * </ul>
+ * Both answers carry {@code Retry-After}, with the body written by the
+ * {@link ErrorResponseWriter}. The change feed and the export stream
+ * for minutes and are left out of the concurrency limit.
+ * <p>
+ * Publishes {@code accounts.admission.rejected} (by reason and priority), and
+ * the {@code accounts.admission.limit} and {@code accounts.admission.in.flight}
+ * gauges.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "accounts.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String API_PATH = "/api/";
+    private static final Set<String> STREAMING_PATHS = Set.of("/api/accounts/changes", "/api/accounts/export");
+    private static final String BATCH_FETCH_PATH = "/api/accounts/fetch/batch";
+    private static final Set<String> BATCH_PATHS = Set.of(BATCH_FETCH_PATH, "/api/accounts/create/batch");
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final int MAX_CLIENTS = 100_000;
+
+    private final ErrorResponseWriter errorResponseWriter;
+    private final ClientResolver clientResolver;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final Cache<String, TokenBucket> buckets;
+    private final long latencyThresholdNanos;
+    private final long batchLatencyThresholdNanos;
+    private final double clientRate;
+    private final int clientBurst;
+    private final double readShare;
+    private final String overloadedRetryAfter;
+    private final Counter rateLimitedReads;
+    private final Counter rateLimitedWrites;
+    private final Counter overloadedReads;
+    private final Counter overloadedWrites;
+
+    public AdmissionControlFilter(ErrorResponseWriter errorResponseWriter,
+                                  ClientResolver clientResolver,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${accounts.admission.client-rate:0}") double clientRate,
+                                  @Value("${accounts.admission.client-burst:2000}") int clientBurst,
+                                  @Value("${accounts.admission.initial-limit:20}") int initialLimit,
+                                  @Value("${accounts.admission.min-limit:4}") int minLimit,
+                                  @Value("${accounts.admission.max-limit:200}") int maxLimit,
+                                  @Value("${accounts.admission.latency-threshold:250ms}") Duration latencyThreshold,
+                                  @Value("${accounts.admission.batch-latency-threshold:5s}") Duration batchLatencyThreshold,
+                                  @Value("${accounts.admission.backoff:0.9}") double backoff,
+                                  @Value("${accounts.admission.read-share:0.8}") double readShare,
+                                  @Value("${accounts.admission.retry-after:1s}") Duration retryAfter) {
+        this.errorResponseWriter = errorResponseWriter;
+        this.clientResolver = clientResolver;
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold.toNanos(), backoff);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.batchLatencyThresholdNanos = batchLatencyThreshold.toNanos();
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.readShare = readShare;
+        this.overloadedRetryAfter = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        this.rateLimitedReads = rejected(meterRegistry, "rate-limited", "read");
+        this.rateLimitedWrites = rejected(meterRegistry, "rate-limited", "write");
+        this.overloadedReads = rejected(meterRegistry, "overloaded", "read");
+        this.overloadedWrites = rejected(meterRegistry, "overloaded", "write");
+        Gauge.builder("accounts.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+                .description("Requests allowed to run at once").register(meterRegistry);
+        Gauge.builder("accounts.admission.in.flight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Requests running under the concurrency limit").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !path(request).startsWith(API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = path(request);
+        boolean read = READ_METHODS.contains(request.getMethod()) || path.equals(BATCH_FETCH_PATH);
+
+        if (clientRate > 0) {
+            TokenBucket bucket = buckets.get(clientResolver.client(request), client -> new TokenBucket(clientRate, clientBurst));
+            long waitNanos = bucket.tryTake(System.nanoTime());
+            if (waitNanos > 0) {
+                (read ? rateLimitedReads : rateLimitedWrites).increment();
+                reject(request, response, HttpStatus.TOO_MANY_REQUESTS,
+                        Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))),
+                        "Too many requests from this client, try again later");
+                return;
+            }
+        }
+
+        if (STREAMING_PATHS.contains(path)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimit.tryAcquire(read ? readShare : 1)) {
+            (read ? overloadedReads : overloadedWrites).increment();
+            reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, overloadedRetryAfter,
+                    "Service is overloaded, try again later");
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            long latency = System.nanoTime() - start;
+            if (request.getAttribute(IdempotencyKeyFilter.WAITED_NANOS) instanceof Long waited) {
+                latency -= waited;
+            }
+            concurrencyLimit.release(latency,
+                    BATCH_PATHS.contains(path) ? batchLatencyThresholdNanos : latencyThresholdNanos, failed);
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String retryAfter,
+                        String message) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        errorResponseWriter.write(request, response, status, message);
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason, String priority) {
+        return Counter.builder("accounts.admission.rejected")
+                .description("Requests turned away before reaching the controller")
+                .tag("reason", reason)
+                .tag("priority", priority)
+                .register(meterRegistry);
+    }
+
+}
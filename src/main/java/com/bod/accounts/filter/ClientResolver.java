@@ -0,0 +1,43 @@
+package com.bod.accounts.filter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Set;
+
+/**
+ * Names the caller of a request, for the filters that keep state per client.
+ * A client is named by its address, which behind a load balancer is only the
+ * caller's with {@code server.forward-headers-strategy} set to {@code native}.
+ * Only requests from one of the {@code accounts.admission.trusted-proxies} are
+ * named by the {@code accounts.admission.client-header} header instead, so a
+ * caller cannot pass itself off as another by sending its name.
+ */
+@Component
+public class ClientResolver {
+
+    private final String clientHeader;
+    private final Set<String> trustedProxies;
+
+    public ClientResolver(@Value("${accounts.admission.client-header:X-Client-Id}") String clientHeader,
+                          @Value("${accounts.admission.trusted-proxies:}") String trustedProxies) {
+        this.clientHeader = clientHeader;
+        this.trustedProxies = StringUtils.commaDelimitedListToSet(trustedProxies.replace(" ", ""));
+    }
+
+    /**
+     * @param request - Request to name the caller of
+     * @return the client header when sent through a trusted proxy, otherwise the remote address
+     */
+    public String client(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (!trustedProxies.contains(address)) {
+            return address;
+        }
+        String client = request.getHeader(clientHeader);
+        return client == null || client.isBlank() ? address : client;
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.bod.accounts.filter;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the number of {@code /api/} requests running at once to the size of
+ * the connection pool when requests run on virtual threads
+ * ({@code spring.threads.virtual.enabled=true}).
+ * <p>
+ * Without a platform thread pool in front of it, every waiting request would
+ * otherwise sit in Hikari's {@code getConnection()} until its connection
+ * timeout. Here they queue first-come first-served on a fair semaphore, and a
+ * request that has waited {@code accounts.bulkhead.max-wait} is answered with
+ * 503 rather than tying up the caller any longer. Streaming responses keep
+ * their permit until the async request completes, except the change feed,
+ * which never touches the database and stays open for minutes.
+ * <p>
+ * Publishes {@code accounts.bulkhead.wait} (time spent queueing, by outcome),
+ * and the {@code accounts.bulkhead.active}, {@code accounts.bulkhead.queued}
+ * and {@code accounts.bulkhead.limit} gauges.
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ConnectionBulkheadFilter extends OncePerRequestFilter {
+
+    private static final String API_PATH = "/api/";
+    private static final String CHANGE_FEED_PATH = "/api/accounts/changes";
+    private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+    private final Semaphore permits;
+    private final int limit;
+    private final long maxWaitNanos;
+    private final ErrorResponseWriter errorResponseWriter;
+    private final Timer acquiredTimer;
+    private final Timer rejectedTimer;
+
+    public ConnectionBulkheadFilter(DataSource dataSource,
+                                    MeterRegistry meterRegistry,
+                                    ErrorResponseWriter errorResponseWriter,
+                                    @Value("${accounts.bulkhead.permits:0}") int permits,
+                                    @Value("${accounts.bulkhead.max-wait:5s}") Duration maxWait) {
+        this.limit = permits > 0 ? permits : poolSize(dataSource);
+        this.permits = new Semaphore(limit, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.errorResponseWriter = errorResponseWriter;
+        this.acquiredTimer = waitTimer(meterRegistry, "acquired");
+        this.rejectedTimer = waitTimer(meterRegistry, "rejected");
+        Gauge.builder("accounts.bulkhead.active", this.permits, semaphore -> limit - semaphore.availablePermits())
+                .description("Requests holding a bulkhead permit").register(meterRegistry);
+        Gauge.builder("accounts.bulkhead.queued", this.permits, Semaphore::getQueueLength)
+                .description("Requests waiting for a bulkhead permit").register(meterRegistry);
+        Gauge.builder("accounts.bulkhead.limit", () -> limit)
+                .description("Requests allowed to run at once").register(meterRegistry);
+        log.info("Bulkhead allows {} concurrent requests, waiting at most {}", limit, maxWait);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith(API_PATH) || path.equals(CHANGE_FEED_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        long waited = System.nanoTime() - start;
+        if (!acquired) {
+            rejectedTimer.record(waited, TimeUnit.NANOSECONDS);
+            reject(request, response);
+            return;
+        }
+        acquiredTimer.record(waited, TimeUnit.NANOSECONDS);
+
+        Permit permit = new Permit();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(permit);
+            } else {
+                permit.release();
+            }
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        errorResponseWriter.write(request, response, HttpStatus.SERVICE_UNAVAILABLE,
+                "Too many concurrent requests, try again later");
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("accounts.bulkhead.wait")
+                .description("Time requests queued for a bulkhead permit")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        HikariConfigMXBean pool = DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class);
+        if (pool == null) {
+            throw new IllegalStateException("Set accounts.bulkhead.permits, the pool size of "
+                    + dataSource.getClass().getName() + " is not known");
+        }
+        // Hikari only applies its default size when the pool starts, which may not have happened yet
+        return pool.getMaximumPoolSize() > 0 ? pool.getMaximumPoolSize() : HIKARI_DEFAULT_POOL_SIZE;
+    }
+
+    /**
+     * Released once, whether the request ends on its own thread or as an async request.
+     */
+    private final class Permit implements AsyncListener {
+
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        private void release() {
+            if (held.compareAndSet(true, false)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+}
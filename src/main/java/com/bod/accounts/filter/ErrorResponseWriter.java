@@ -0,0 +1,103 @@
+package com.bod.accounts.filter;
+
+import com.bod.accounts.constants.AccountsConstants;
+import com.bod.accounts.dto.ErrorResponseDto;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the {@link ErrorResponseDto} of a request a filter turns away before
+ * it reaches Spring MVC. The body goes through the message converters in the
+ * format the request accepts, JSON, CBOR or Smile, as the controller's own
+ * errors do; JSON when it accepts none of them.
+ */
+@Component
+public class ErrorResponseWriter {
+
+    private static final List<MediaType> ERROR_FORMATS = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR, MediaType.valueOf(AccountsConstants.APPLICATION_SMILE_VALUE));
+
+    private final List<HttpMessageConverter<?>> converters;
+
+    public ErrorResponseWriter(HttpMessageConverters messageConverters) {
+        this.converters = messageConverters.getConverters();
+    }
+
+    /**
+     * @param request - Request turned away
+     * @param response - Response to write the error to, with any extra headers already set
+     * @param status - Status to answer with
+     * @param message - What went wrong
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto(
+                "uri=" + request.getRequestURI(),
+                status,
+                message,
+                LocalDateTime.now()
+        );
+        response.setStatus(status.value());
+        MediaType format = errorFormat(request.getHeader(HttpHeaders.ACCEPT));
+        HttpMessageConverter<Object> converter = converter(format);
+        if (converter == null) {
+            format = MediaType.APPLICATION_JSON;
+            converter = converter(format);
+        }
+        ServletServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
+        converter.write(errorResponseDto, format, outputMessage);
+        outputMessage.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private HttpMessageConverter<Object> converter(MediaType format) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter.canWrite(ErrorResponseDto.class, format)) {
+                return (HttpMessageConverter<Object>) converter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The most specific acceptable format wins, and JSON when none is acceptable.
+     */
+    private static MediaType errorFormat(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptable);
+        for (MediaType mediaType : acceptable) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType format : ERROR_FORMATS) {
+                if (mediaType.isCompatibleWith(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+}
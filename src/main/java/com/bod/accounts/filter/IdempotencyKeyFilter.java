@@ -0,0 +1,285 @@
+package com.bod.accounts.filter;
+
+import com.bod.accounts.exception.IdempotencyKeyInUseException;
+import com.bod.accounts.exception.IdempotencyKeyMismatchException;
+import com.bod.accounts.idempotency.IdempotentResponse;
+import com.bod.accounts.service.IIdempotencyStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Runs a create, update or delete sent with an {@code Idempotency-Key} header
+ * at most once per key. The response is kept in the {@link IIdempotencyStore}
+ * and a retry with the same key is answered with it, marked with
+ * {@code Idempotent-Replayed: true}, without reaching the controller. A retry
+ * that arrives while the first request is still running waits for its
+ * response.
+ * <p>
+ * Keys are kept per caller, as named by the {@link ClientResolver}, so one
+ * client's key never answers another client's request with its response.
+ * The key is tied to a fingerprint of the method, path, query and body. The
+ * same key on a different request is answered with 422, and a retry that gave
+ * up waiting with 409. Responses with a 5xx status are not kept, so a retry
+ * after a failure runs again. Errors are written by the
+ * {@link ErrorResponseWriter}. Requests without the header are not affected.
+ * The time spent waiting for the first request is left in the
+ * {@link #WAITED_NANOS} request attribute, for the filters around this one.
+ * <p>
+ * Publishes {@code accounts.idempotency.requests}, tagged by outcome.
+ */
+@Component
+public class IdempotencyKeyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    /**
+     * Request attribute with the nanoseconds spent waiting for a running request with the same key.
+     */
+    public static final String WAITED_NANOS = IdempotencyKeyFilter.class.getName() + ".WAITED_NANOS";
+
+    private static final String API_PATH = "/api/";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final Set<String> UNSTORED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        UNSTORED_HEADERS.addAll(List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.DATE,
+                HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION));
+    }
+
+    private final IIdempotencyStore idempotencyStore;
+    private final ClientResolver clientResolver;
+    private final ErrorResponseWriter errorResponseWriter;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter mismatched;
+    private final Counter inUse;
+
+    public IdempotencyKeyFilter(IIdempotencyStore idempotencyStore, ClientResolver clientResolver,
+                                ErrorResponseWriter errorResponseWriter, MeterRegistry meterRegistry) {
+        this.idempotencyStore = idempotencyStore;
+        this.clientResolver = clientResolver;
+        this.errorResponseWriter = errorResponseWriter;
+        this.executed = requests(meterRegistry, "executed");
+        this.replayed = requests(meterRegistry, "replayed");
+        this.mismatched = requests(meterRegistry, "mismatched");
+        this.inUse = requests(meterRegistry, "in-use");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith(API_PATH) || !MUTATING_METHODS.contains(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String sentKey = request.getHeader(IDEMPOTENCY_KEY);
+        if (sentKey.isBlank() || sentKey.length() > MAX_KEY_LENGTH) {
+            reject(request, response, HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        String key = scopedKey(clientResolver.client(request), sentKey);
+        byte[] body = request.getInputStream().readAllBytes();
+        UUID claim = UUID.randomUUID();
+        IdempotentResponse stored;
+        long claimStart = System.nanoTime();
+        try {
+            stored = idempotencyStore.claim(key, fingerprint(request, body), claim).orElse(null);
+        } catch (IdempotencyKeyMismatchException e) {
+            // the store only knows the scoped key, the caller the key it sent
+            mismatched.increment();
+            reject(request, response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    new IdempotencyKeyMismatchException(sentKey).getMessage());
+            return;
+        } catch (IdempotencyKeyInUseException e) {
+            inUse.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            reject(request, response, HttpStatus.CONFLICT, new IdempotencyKeyInUseException(sentKey).getMessage());
+            return;
+        } finally {
+            request.setAttribute(WAITED_NANOS, System.nanoTime() - claimStart);
+        }
+        if (stored != null) {
+            replayed.increment();
+            replay(stored, response);
+            return;
+        }
+
+        executed.increment();
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), captured);
+            if (captured.getStatus() < 500 && !request.isAsyncStarted()) {
+                idempotencyStore.complete(key, claim, capture(captured));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                idempotencyStore.release(key, claim);
+            }
+            captured.copyBodyToResponse();
+        }
+    }
+
+    private static IdempotentResponse capture(ContentCachingResponseWrapper response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (!UNSTORED_HEADERS.contains(name)) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+        return new IdempotentResponse(response.getStatus(), response.getContentType(), headers,
+                response.getContentAsByteArray());
+    }
+
+    private static void replay(IdempotentResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.status());
+        stored.headers().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setHeader(IDEMPOTENT_REPLAYED, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        errorResponseWriter.write(request, response, status, message);
+    }
+
+    /**
+     * @return hex SHA-256 of the client and the key, which fits the store's key column whatever their length
+     */
+    static String scopedKey(String client, String key) {
+        return HexFormat.of().formatHex(sha256().digest((client + '\n' + key).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return hex SHA-256 of the method, path, query and body
+     */
+    static String fingerprint(HttpServletRequest request, byte[] body) {
+        MessageDigest digest = sha256();
+        String query = request.getQueryString();
+        digest.update((request.getMethod() + ' ' + request.getRequestURI() + (query == null ? "" : '?' + query) + '\n')
+                .getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(body));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("accounts.idempotency.requests")
+                .description("Requests sent with an Idempotency-Key")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The request with its body read up front for the fingerprint, readable again by the controller.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // the whole body is already in memory
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.bod.accounts.idempotency;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response to a request sent with an {@code Idempotency-Key}, kept so that a
+ * retry with the same key is answered with it instead of running again.
+ *
+ * @param status - HTTP status
+ * @param contentType - Content type of the body, null if there is none
+ * @param headers - Other response headers, such as {@code ETag}
+ * @param body - Response body as sent
+ */
+public record IdempotentResponse(int status,
+                                 String contentType,
+                                 Map<String, List<String>> headers,
+                                 byte[] body) {
+}
@@ -0,0 +1,133 @@
+package com.bod.accounts.importer;
+
+import com.bod.accounts.constants.AccountsConstants;
+import lombok.AllArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads one chunk of imported customers in a single transaction: the rows are
+ * streamed into a temporary staging table with {@code COPY} and moved into
+ * {@code customer} and {@code accounts} by one set-based insert that skips
+ * mobile numbers which are already registered. The skip is an
+ * {@code ON CONFLICT} on the unique mobile number, so a number registered
+ * online while the chunk is loading is skipped too instead of failing the
+ * chunk; the skipped lines are the staged rows the insert did not return.
+ */
+@Component
+@AllArgsConstructor
+class CustomerCopyLoader {
+
+    private static final String CREATE_STAGE_SQL = "CREATE TEMP TABLE IF NOT EXISTS customer_import_stage ("
+            + "customer_id bigint, line_number bigint, name varchar(100), email varchar(100), "
+            + "mobile_number varchar(20), account_number bigint) ON COMMIT DELETE ROWS";
+
+    private static final String RESERVE_IDS_SQL = "SELECT nextval('customer_customer_id_seq') FROM generate_series(1, ?)";
+
+    private static final String COPY_SQL = "COPY customer_import_stage "
+            + "(customer_id, line_number, name, email, mobile_number, account_number) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String INSERT_SQL = "WITH new_customer AS ("
+            + "INSERT INTO customer (customer_id, name, email, mobile_number, created_at, created_by) "
+            + "SELECT s.customer_id, s.name, s.email, s.mobile_number, ?, ? FROM customer_import_stage s "
+            + "ON CONFLICT (mobile_number) DO NOTHING "
+            + "RETURNING customer_id), "
+            + "new_account AS ("
+            + "INSERT INTO accounts (customer_id, account_number, account_type, branch_address, created_at, created_by) "
+            + "SELECT s.customer_id, s.account_number, ?, ?, ?, ? "
+            + "FROM customer_import_stage s JOIN new_customer n ON n.customer_id = s.customer_id) "
+            + "SELECT s.line_number FROM customer_import_stage s "
+            + "WHERE NOT EXISTS (SELECT 1 FROM new_customer n WHERE n.customer_id = s.customer_id)";
+
+    private DataSource dataSource;
+    private AuditorAware<String> auditorAware;
+
+    /**
+     * @param customers - Validated customers with their account numbers, unique by mobile number
+     * @return line numbers of the customers that were skipped because their mobile number is already registered
+     */
+    List<Long> load(List<StagedCustomer> customers) throws SQLException, IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGE_SQL);
+                }
+                List<Long> customerIds = reserveCustomerIds(connection, customers.size());
+                connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn(COPY_SQL, new ByteArrayInputStream(toCsv(customers, customerIds)));
+                List<Long> registered = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                    LocalDateTime now = LocalDateTime.now();
+                    String auditor = auditorAware.getCurrentAuditor().orElse(null);
+                    statement.setObject(1, now);
+                    statement.setString(2, auditor);
+                    statement.setString(3, AccountsConstants.SAVINGS);
+                    statement.setString(4, AccountsConstants.ADDRESS);
+                    statement.setObject(5, now);
+                    statement.setString(6, auditor);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            registered.add(resultSet.getLong(1));
+                        }
+                    }
+                }
+                connection.commit();
+                return registered;
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Draws one id per customer from the sequence behind the column default,
+     * so rows inserted here never collide with customers inserted elsewhere.
+     */
+    private static List<Long> reserveCustomerIds(Connection connection, int count) throws SQLException {
+        List<Long> ids = new ArrayList<>(count);
+        try (PreparedStatement statement = connection.prepareStatement(RESERVE_IDS_SQL)) {
+            statement.setInt(1, count);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static byte[] toCsv(List<StagedCustomer> customers, List<Long> customerIds) {
+        StringBuilder csv = new StringBuilder(customers.size() * 96);
+        for (int i = 0; i < customers.size(); i++) {
+            StagedCustomer customer = customers.get(i);
+            csv.append(customerIds.get(i)).append(',')
+                    .append(customer.lineNumber()).append(',');
+            appendQuoted(csv, customer.customerDto().getName()).append(',');
+            appendQuoted(csv, customer.customerDto().getEmail()).append(',');
+            appendQuoted(csv, customer.customerDto().getMobileNumber()).append(',')
+                    .append(customer.accountNumber()).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StringBuilder appendQuoted(StringBuilder csv, String value) {
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+}
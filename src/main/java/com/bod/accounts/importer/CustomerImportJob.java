@@ -0,0 +1,276 @@
+package com.bod.accounts.importer;
+
+import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.service.IAccountNumberGenerator;
+import com.bod.accounts.service.IMobileNumberFilter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Imports a CSV file of customers ({@code name,email,mobileNumber}, further
+ * columns are ignored) as four stages connected by bounded queues, each on its
+ * own thread:
+ * <ol>
+ *     <li>read: memory-mapped line reading, cut into chunks</li>
+ *     <li>parse and validate: the same Bean Validation rules as {@link CustomerDto}</li>
+ *     <li>dedupe: drops repeated mobile numbers and allocates account numbers</li>
+ *     <li>load: {@code COPY} through {@link CustomerCopyLoader}, one transaction per chunk</li>
+ * </ol>
+ * Mobile numbers repeated across chunks or already registered are rejected by
+ * the load itself, so memory use does not grow with the size of the file.
+ * <p>
+ * Rejected lines are appended to {@code <file>.rejected.csv} with their reason.
+ * After every committed chunk {@code <file>.checkpoint} is rewritten; running the
+ * job again for the same file resumes right after the last committed chunk.
+ */
+@Slf4j
+@Component
+public class CustomerImportJob {
+
+    private static final Chunk END = new Chunk(0, 0, List.of());
+
+    private final Validator validator;
+    private final IAccountNumberGenerator accountNumberGenerator;
+    private final CustomerCopyLoader customerCopyLoader;
+    private final IMobileNumberFilter mobileNumberFilter;
+    private final int chunkSize;
+    private final int queueCapacity;
+
+    public CustomerImportJob(Validator validator,
+                             IAccountNumberGenerator accountNumberGenerator,
+                             CustomerCopyLoader customerCopyLoader,
+                             IMobileNumberFilter mobileNumberFilter,
+                             @Value("${accounts.import.chunk-size:5000}") int chunkSize,
+                             @Value("${accounts.import.queue-capacity:4}") int queueCapacity) {
+        this.validator = validator;
+        this.accountNumberGenerator = accountNumberGenerator;
+        this.customerCopyLoader = customerCopyLoader;
+        this.mobileNumberFilter = mobileNumberFilter;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param file - CSV file to import
+     * @return the progress of the import once every line is committed
+     */
+    public ImportProgress run(Path file) throws IOException, InterruptedException {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        Path rejectedFile = file.resolveSibling(file.getFileName() + ".rejected.csv");
+        ImportCheckpoint checkpoint = ImportCheckpoint.read(checkpointFile);
+        ImportProgress progress = new ImportProgress(Files.size(file), checkpoint);
+        if (checkpoint.offset() > 0) {
+            log.info("Resuming import of {} at line {}", file, checkpoint.lineNumber() + 1);
+        }
+
+        BlockingQueue<Chunk> read = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk> deduped = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService executor = Executors.newFixedThreadPool(4,
+                Thread.ofPlatform().name("customer-import-", 1).factory());
+        CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        try (BufferedWriter rejected = Files.newBufferedWriter(rejectedFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            stages.submit(() -> read(file, checkpoint, read));
+            stages.submit(stage(read, parsed, this::parseAndValidate));
+            stages.submit(stage(parsed, deduped, this::dedupe));
+            stages.submit(() -> load(deduped, rejected, progress, checkpointFile));
+            for (int i = 0; i < 4; i++) {
+                stages.take().get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Import of " + file + " failed at " + progress, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Imported {}: {}", file, progress);
+        return progress;
+    }
+
+    private Void read(Path file, ImportCheckpoint checkpoint, BlockingQueue<Chunk> out)
+            throws IOException, InterruptedException {
+        try (MappedLineReader reader = new MappedLineReader(file, checkpoint.offset())) {
+            long lineNumber = checkpoint.lineNumber();
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.regionMatches(true, 0, "name,", 0, 5)) {
+                    line = "";
+                }
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    out.put(new Chunk(lineNumber - lines.size() + 1, reader.offset(), lines));
+                    lines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!lines.isEmpty()) {
+                out.put(new Chunk(lineNumber - lines.size() + 1, reader.offset(), lines));
+            }
+        }
+        out.put(END);
+        return null;
+    }
+
+    private void parseAndValidate(Chunk chunk) {
+        for (int i = 0; i < chunk.lines.size(); i++) {
+            String line = chunk.lines.get(i);
+            long lineNumber = chunk.firstLineNumber + i;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(line);
+            if (fields == null || fields.size() < 3) {
+                chunk.reject(lineNumber, "Expected name,email,mobileNumber");
+                continue;
+            }
+            CustomerDto customerDto = new CustomerDto();
+            customerDto.setName(fields.get(0));
+            customerDto.setEmail(fields.get(1));
+            customerDto.setMobileNumber(fields.get(2));
+            Set<ConstraintViolation<CustomerDto>> violations = validator.validate(customerDto);
+            if (violations.isEmpty()) {
+                chunk.customers.add(new StagedCustomer(lineNumber, customerDto, 0));
+            } else {
+                chunk.reject(lineNumber, violations.stream().map(ConstraintViolation::getMessage).sorted()
+                        .collect(Collectors.joining(", ")));
+            }
+        }
+    }
+
+    private void dedupe(Chunk chunk) {
+        Set<String> seen = new HashSet<>();
+        List<StagedCustomer> unique = new ArrayList<>(chunk.customers.size());
+        for (StagedCustomer customer : chunk.customers) {
+            String mobileNumber = customer.customerDto().getMobileNumber();
+            if (seen.add(mobileNumber)) {
+                mobileNumberFilter.registered(mobileNumber);
+                unique.add(new StagedCustomer(customer.lineNumber(), customer.customerDto(),
+                        accountNumberGenerator.nextAccountNumber()));
+            } else {
+                chunk.reject(customer.lineNumber(), "Mobile number " + mobileNumber + " repeated in the file");
+            }
+        }
+        chunk.customers.clear();
+        chunk.customers.addAll(unique);
+    }
+
+    private Void load(BlockingQueue<Chunk> in, BufferedWriter rejected, ImportProgress progress, Path checkpointFile)
+            throws Exception {
+        Chunk chunk;
+        while ((chunk = in.take()) != END) {
+            Set<Long> registered = chunk.customers.isEmpty() ? Set.of() : new HashSet<>(customerCopyLoader.load(chunk.customers));
+            for (StagedCustomer customer : chunk.customers) {
+                if (registered.contains(customer.lineNumber())) {
+                    chunk.reject(customer.lineNumber(), "Customer already registered with given mobileNumber "
+                            + customer.customerDto().getMobileNumber());
+                }
+            }
+            for (String rejection : chunk.rejections) {
+                rejected.write(rejection);
+            }
+            rejected.flush();
+            progress.chunkCommitted(chunk.endOffset, chunk.firstLineNumber + chunk.lines.size() - 1,
+                    chunk.customers.size() - registered.size(), chunk.rejections.size());
+            progress.toCheckpoint().write(checkpointFile);
+            log.info("Import progress: {}", progress);
+        }
+        return null;
+    }
+
+    private static Callable<Void> stage(BlockingQueue<Chunk> in, BlockingQueue<Chunk> out, ChunkStage work) {
+        return () -> {
+            Chunk chunk;
+            while ((chunk = in.take()) != END) {
+                work.apply(chunk);
+                out.put(chunk);
+            }
+            out.put(END);
+            return null;
+        };
+    }
+
+    /**
+     * @param line - One line of CSV, fields optionally quoted with doubled inner quotes
+     * @return the fields of the line, or null if a quote is never closed
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    @FunctionalInterface
+    private interface ChunkStage {
+        void apply(Chunk chunk);
+    }
+
+    private static final class Chunk {
+        private final long firstLineNumber;
+        private final long endOffset;
+        private final List<String> lines;
+        private final List<StagedCustomer> customers = new ArrayList<>();
+        private final List<String> rejections = new ArrayList<>();
+
+        private Chunk(long firstLineNumber, long endOffset, List<String> lines) {
+            this.firstLineNumber = firstLineNumber;
+            this.endOffset = endOffset;
+            this.lines = lines;
+        }
+
+        private void reject(long lineNumber, String reason) {
+            String line = lines.get((int) (lineNumber - firstLineNumber));
+            rejections.add(lineNumber + ",\"" + reason.replace("\"", "\"\"") + "\",\""
+                    + line.replace("\"", "\"\"") + "\"\n");
+        }
+    }
+
+}
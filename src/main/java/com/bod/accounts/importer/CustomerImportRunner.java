@@ -0,0 +1,42 @@
+package com.bod.accounts.importer;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Starts a {@link CustomerImportJob} for the file given as
+ * {@code --accounts.import.file=<path>}. The import runs on its own thread, so
+ * the instance keeps serving requests while it loads; progress is logged after
+ * every committed chunk.
+ */
+@Slf4j
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "accounts.import", name = "file")
+public class CustomerImportRunner implements ApplicationRunner {
+
+    private CustomerImportJob customerImportJob;
+    private Environment environment;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Path file = Path.of(environment.getRequiredProperty("accounts.import.file"));
+        Thread.ofPlatform().name("customer-import").start(() -> {
+            try {
+                customerImportJob.run(file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Import of {} stopped; run it again to resume from the last checkpoint", file, e);
+            }
+        });
+    }
+
+}
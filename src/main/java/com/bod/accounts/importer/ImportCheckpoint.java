@@ -0,0 +1,57 @@
+package com.bod.accounts.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Position of the last committed chunk of an import, kept next to the input
+ * file so an interrupted import resumes right after it.
+ *
+ * @param offset - Byte offset right after the last committed line
+ * @param lineNumber - Number of the last committed line
+ * @param accepted - Rows loaded so far
+ * @param rejected - Rows rejected so far
+ */
+record ImportCheckpoint(long offset, long lineNumber, long accepted, long rejected) {
+
+    static final ImportCheckpoint START = new ImportCheckpoint(0, 0, 0, 0);
+
+    static ImportCheckpoint read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return START;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new ImportCheckpoint(
+                Long.parseLong(properties.getProperty("offset")),
+                Long.parseLong(properties.getProperty("lineNumber")),
+                Long.parseLong(properties.getProperty("accepted")),
+                Long.parseLong(properties.getProperty("rejected")));
+    }
+
+    /**
+     * Replaces the checkpoint file atomically, so a crash leaves either the old
+     * or the new checkpoint behind.
+     */
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("lineNumber", Long.toString(lineNumber));
+        properties.setProperty("accepted", Long.toString(accepted));
+        properties.setProperty("rejected", Long.toString(rejected));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.bod.accounts.importer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of an import. Counters only move once a chunk is committed, so
+ * they always describe what a resumed import would start from.
+ */
+public final class ImportProgress {
+
+    private final long totalBytes;
+    private final AtomicLong committedBytes = new AtomicLong();
+    private final AtomicLong committedLines = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    ImportProgress(long totalBytes, ImportCheckpoint checkpoint) {
+        this.totalBytes = totalBytes;
+        this.committedBytes.set(checkpoint.offset());
+        this.committedLines.set(checkpoint.lineNumber());
+        this.accepted.set(checkpoint.accepted());
+        this.rejected.set(checkpoint.rejected());
+    }
+
+    void chunkCommitted(long offset, long lineNumber, long acceptedRows, long rejectedRows) {
+        accepted.addAndGet(acceptedRows);
+        rejected.addAndGet(rejectedRows);
+        committedLines.set(lineNumber);
+        committedBytes.set(offset);
+    }
+
+    ImportCheckpoint toCheckpoint() {
+        return new ImportCheckpoint(committedBytes.get(), committedLines.get(), accepted.get(), rejected.get());
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getCommittedBytes() {
+        return committedBytes.get();
+    }
+
+    public long getCommittedLines() {
+        return committedLines.get();
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        double percent = totalBytes == 0 ? 100 : 100.0 * committedBytes.get() / totalBytes;
+        return String.format("%.1f%% (%d lines, %d accepted, %d rejected)",
+                percent, committedLines.get(), accepted.get(), rejected.get());
+    }
+
+}
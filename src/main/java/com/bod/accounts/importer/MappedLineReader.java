@@ -0,0 +1,99 @@
+package com.bod.accounts.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file line by line through memory-mapped windows, so arbitrarily large
+ * files are read without copying them through the heap. A line cut off by the
+ * end of a window is read again from a window starting at that line.
+ */
+final class MappedLineReader implements Closeable {
+
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private byte[] lineBuffer = new byte[1024];
+
+    /**
+     * @param file - File to read
+     * @param startOffset - Byte offset of the first line to read
+     */
+    MappedLineReader(Path file, long startOffset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        map(Math.min(startOffset, fileSize));
+    }
+
+    /**
+     * @return the next line without its line terminator, or null at the end of the file
+     */
+    String nextLine() throws IOException {
+        while (true) {
+            int start = window.position();
+            for (int i = start; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    String line = decode(start, i);
+                    window.position(i + 1);
+                    return line;
+                }
+            }
+            boolean lastWindow = windowStart + window.limit() == fileSize;
+            if (lastWindow) {
+                if (start == window.limit()) {
+                    return null;
+                }
+                String line = decode(start, window.limit());
+                window.position(window.limit());
+                return line;
+            }
+            if (start == 0) {
+                throw new IOException("Line at offset " + windowStart + " is longer than " + WINDOW_SIZE + " bytes");
+            }
+            map(windowStart + start);
+        }
+    }
+
+    /**
+     * @return the byte offset right after the last line returned
+     */
+    long offset() {
+        return windowStart + window.position();
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    long size() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+    }
+
+    private String decode(int from, int to) {
+        int end = to > from && window.get(to - 1) == '\r' ? to - 1 : to;
+        int length = end - from;
+        if (lineBuffer.length < length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        window.get(from, lineBuffer, 0, length);
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+}
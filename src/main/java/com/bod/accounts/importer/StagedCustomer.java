@@ -0,0 +1,13 @@
+package com.bod.accounts.importer;
+
+import com.bod.accounts.dto.CustomerDto;
+
+/**
+ * A validated customer of an import file, ready to be loaded.
+ *
+ * @param lineNumber - Line of the input file the customer was read from
+ * @param customerDto - Customer details
+ * @param accountNumber - Account number allocated for the customer
+ */
+record StagedCustomer(long lineNumber, CustomerDto customerDto, long accountNumber) {
+}
@@ -0,0 +1,80 @@
+package com.bod.accounts.journal;
+
+import com.bod.accounts.entity.Accounts;
+import com.bod.accounts.entity.BaseEntity;
+import com.bod.accounts.entity.Customer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One mutation of a {@link Customer} or {@link Accounts} row for the change
+ * history. The values are copied when the change is created, because the
+ * entities keep changing while the change waits to be written.
+ *
+ * @param entity - CUSTOMER or ACCOUNT
+ * @param entityId - Customer id or account number
+ * @param operation - INSERT, UPDATE or DELETE
+ * @param before - Column values before the change, null for an insert
+ * @param after - Column values after the change, null for a delete
+ */
+public record AccountChange(String entity,
+                            Long entityId,
+                            String operation,
+                            Map<String, Object> before,
+                            Map<String, Object> after) {
+
+    public static final String CUSTOMER = "CUSTOMER";
+    public static final String ACCOUNT = "ACCOUNT";
+
+    /**
+     * @param before - Snapshot of the customer before the change, null for an insert
+     * @param after - Snapshot of the customer after the change, null for a delete
+     */
+    public static AccountChange ofCustomer(Map<String, Object> before, Map<String, Object> after) {
+        return of(CUSTOMER, "customerId", before, after);
+    }
+
+    /**
+     * @param before - Snapshot of the account before the change, null for an insert
+     * @param after - Snapshot of the account after the change, null for a delete
+     */
+    public static AccountChange ofAccount(Map<String, Object> before, Map<String, Object> after) {
+        return of(ACCOUNT, "accountNumber", before, after);
+    }
+
+    public static Map<String, Object> snapshot(Customer customer) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("customerId", customer.getCustomerId());
+        values.put("name", customer.getName());
+        values.put("email", customer.getEmail());
+        values.put("mobileNumber", customer.getMobileNumber());
+        return audited(values, customer);
+    }
+
+    public static Map<String, Object> snapshot(Accounts account) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("accountNumber", account.getAccountNumber());
+        values.put("customerId", account.getCustomerId());
+        values.put("accountType", account.getAccountType());
+        values.put("branchAddress", account.getBranchAddress());
+        return audited(values, account);
+    }
+
+    private static Map<String, Object> audited(Map<String, Object> values, BaseEntity entity) {
+        values.put("createdAt", entity.getCreatedAt());
+        values.put("createdBy", entity.getCreatedBy());
+        values.put("updatedAt", entity.getUpdatedAt());
+        values.put("updatedBy", entity.getUpdatedBy());
+        values.put("version", entity.getVersion());
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static AccountChange of(String entity, String idKey, Map<String, Object> before, Map<String, Object> after) {
+        Map<String, Object> values = after != null ? after : before;
+        String operation = before == null ? "INSERT" : after == null ? "DELETE" : "UPDATE";
+        return new AccountChange(entity, (Long) values.get(idKey), operation, before, after);
+    }
+
+}
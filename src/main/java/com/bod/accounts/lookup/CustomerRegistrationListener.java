@@ -0,0 +1,141 @@
+package com.bod.accounts.lookup;
+
+import com.bod.accounts.service.impl.BloomMobileNumberFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Adds mobile numbers registered by any instance to the local
+ * {@link BloomMobileNumberFilter}. The {@code customer_registered_notify}
+ * trigger sends every new or changed number on the {@code customer_registered}
+ * channel at commit. This listener holds its own connection outside the pool.
+ * <p>
+ * LISTEN is issued before the context finishes starting, so it is in place
+ * before the filter's first build. After a lost connection, notifications sent
+ * in between are gone, and the filter is rebuilt once listening resumes.
+ * <p>
+ * Waiting for notifications sends nothing to the server, so a connection that
+ * was dropped silently, by a NAT or load balancer idle timeout or a failover,
+ * would just stay quiet. Every poll that comes back empty therefore checks the
+ * connection with a round trip, and TCP keepalive is on as well.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "accounts.mobile-filter", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerRegistrationListener implements SmartLifecycle {
+
+    private static final String CHANNEL = "customer_registered";
+    private static final int POLL_MILLIS = 10_000;
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+    private static final int VALID_TIMEOUT_SECONDS = 5;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final BloomMobileNumberFilter mobileNumberFilter;
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+
+    public CustomerRegistrationListener(DataSourceProperties dataSourceProperties,
+                                        BloomMobileNumberFilter mobileNumberFilter) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.mobileNumberFilter = mobileNumberFilter;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        try {
+            connection = listen();
+        } catch (SQLException e) {
+            log.warn("Could not LISTEN on {}, retrying in the background", CHANNEL, e);
+        }
+        thread = Thread.ofPlatform().name("customer-registration-listener").daemon().start(this::receive);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        closeQuietly(connection);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void receive() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    connection = listen();
+                    mobileNumberFilter.rebuildInBackground();
+                }
+                PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(POLL_MILLIS);
+                if (notifications != null && notifications.length > 0) {
+                    for (PGNotification notification : notifications) {
+                        mobileNumberFilter.registered(notification.getParameter());
+                    }
+                } else if (!connection.isValid(VALID_TIMEOUT_SECONDS)) {
+                    throw new SQLException("LISTEN connection did not answer within " + VALID_TIMEOUT_SECONDS + " s");
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost LISTEN connection on {}, reconnecting in {}", CHANNEL, RECONNECT_DELAY, e);
+                closeQuietly(connection);
+                connection = null;
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection listen() throws SQLException {
+        Properties properties = new Properties();
+        if (dataSourceProperties.determineUsername() != null) {
+            properties.setProperty("user", dataSourceProperties.determineUsername());
+        }
+        if (dataSourceProperties.determinePassword() != null) {
+            properties.setProperty("password", dataSourceProperties.determinePassword());
+        }
+        properties.setProperty("tcpKeepAlive", "true");
+        Connection listening = DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+        try (Statement statement = listening.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException e) {
+            closeQuietly(listening);
+            throw e;
+        }
+        return listening;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+}
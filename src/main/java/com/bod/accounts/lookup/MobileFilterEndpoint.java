@@ -0,0 +1,34 @@
+package com.bod.accounts.lookup;
+
+import com.bod.accounts.service.impl.BloomMobileNumberFilter;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/mobilefilter}: sizing, false positive rate and rebuilds of the
+ * registered mobile number filter. A POST starts a rebuild.
+ */
+@Component
+@Endpoint(id = "mobilefilter")
+@AllArgsConstructor
+public class MobileFilterEndpoint {
+
+    private BloomMobileNumberFilter mobileNumberFilter;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return mobileNumberFilter.stats();
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        boolean started = mobileNumberFilter.rebuildInBackground();
+        return Map.of("rebuildStarted", started);
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.bod.accounts.lookup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash map from a non-negative {@code long} key to a pair of
+ * {@code long}s, stored in direct {@link ByteBuffer}s so the entries stay out of
+ * the GC heap. Each slot takes 24 bytes (key + 1, with 0 marking an empty slot,
+ * then both values). Slots live in segments of at most 2^24 slots, because a
+ * single buffer is limited to 2 GB. Collisions are resolved by linear probing.
+ * Removals shift the rest of the probe run back, so there are no tombstones.
+ * <p>
+ * Reads are optimistic against a {@link StampedLock} and fall back to a read
+ * lock if a write got in between. Writes, and the doubling of the table past
+ * {@value #MAX_LOAD_FACTOR} load, take the write lock. Direct memory is limited
+ * by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+ */
+public final class OffHeapLongIndex {
+
+    private static final int SLOT_BYTES = 24;
+    private static final int MAX_SEGMENT_SHIFT = 24;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private long size;
+
+    /**
+     * @param expectedEntries - Number of entries to size the table for without growing
+     */
+    public OffHeapLongIndex(long expectedEntries) {
+        long capacity = Long.highestOneBit(Math.max(1024, (long) (expectedEntries / MAX_LOAD_FACTOR)) - 1) << 1;
+        this.table = new Table(capacity);
+    }
+
+    /**
+     * @return the values of the key, or null if it is not in the index
+     */
+    public Entry get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        Entry entry = table.find(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                entry = table.find(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return entry;
+    }
+
+    public void put(long key, long first, long second) {
+        requireValidKey(key);
+        long stamp = lock.writeLock();
+        try {
+            if (table.put(key, first, second)) {
+                size++;
+                if (size > table.capacity * MAX_LOAD_FACTOR) {
+                    table = table.grow();
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(long key) {
+        requireValidKey(key);
+        long stamp = lock.writeLock();
+        try {
+            if (table.remove(key)) {
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return direct memory held by the table
+     */
+    public long offHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return table.capacity * SLOT_BYTES;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static void requireValidKey(long key) {
+        if (key < 0 || key == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Key out of range: " + key);
+        }
+    }
+
+    /**
+     * @param first - First value stored with the key
+     * @param second - Second value stored with the key
+     */
+    public record Entry(long first, long second) {
+    }
+
+    private static final class Table {
+
+        private final ByteBuffer[] segments;
+        private final long capacity;
+        private final long mask;
+        private final int segmentShift;
+        private final long segmentMask;
+
+        private Table(long capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.segmentShift = Math.min(Long.numberOfTrailingZeros(capacity), MAX_SEGMENT_SHIFT);
+            this.segmentMask = (1L << segmentShift) - 1;
+            this.segments = new ByteBuffer[(int) (capacity >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = ByteBuffer.allocateDirect((int) ((segmentMask + 1) * SLOT_BYTES)).order(ByteOrder.nativeOrder());
+            }
+        }
+
+        private Entry find(long key) {
+            long stored = key + 1;
+            long slot = mix(key) & mask;
+            for (long probes = 0; probes < capacity; probes++, slot = (slot + 1) & mask) {
+                ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+                int offset = (int) ((slot & segmentMask) * SLOT_BYTES);
+                long slotKey = segment.getLong(offset);
+                if (slotKey == 0) {
+                    return null;
+                }
+                if (slotKey == stored) {
+                    return new Entry(segment.getLong(offset + 8), segment.getLong(offset + 16));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return true if the key was added, false if its values were replaced
+         */
+        private boolean put(long key, long first, long second) {
+            long stored = key + 1;
+            for (long slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+                int offset = (int) ((slot & segmentMask) * SLOT_BYTES);
+                long slotKey = segment.getLong(offset);
+                if (slotKey == 0 || slotKey == stored) {
+                    segment.putLong(offset + 8, first);
+                    segment.putLong(offset + 16, second);
+                    segment.putLong(offset, stored);
+                    return slotKey == 0;
+                }
+            }
+        }
+
+        private boolean remove(long key) {
+            long stored = key + 1;
+            long slot = mix(key) & mask;
+            while (true) {
+                long slotKey = keyAt(slot);
+                if (slotKey == 0) {
+                    return false;
+                }
+                if (slotKey == stored) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Move later entries of the probe run into the hole unless that would put them before their home slot
+            long hole = slot;
+            for (long next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+                long nextKey = keyAt(next);
+                if (nextKey == 0) {
+                    break;
+                }
+                long home = mix(nextKey - 1) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    copy(next, hole);
+                    hole = next;
+                }
+            }
+            ByteBuffer segment = segments[(int) (hole >>> segmentShift)];
+            segment.putLong((int) ((hole & segmentMask) * SLOT_BYTES), 0);
+            return true;
+        }
+
+        private Table grow() {
+            Table grown = new Table(capacity << 1);
+            for (long slot = 0; slot < capacity; slot++) {
+                long slotKey = keyAt(slot);
+                if (slotKey != 0) {
+                    ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+                    int offset = (int) ((slot & segmentMask) * SLOT_BYTES);
+                    grown.put(slotKey - 1, segment.getLong(offset + 8), segment.getLong(offset + 16));
+                }
+            }
+            return grown;
+        }
+
+        private long keyAt(long slot) {
+            return segments[(int) (slot >>> segmentShift)].getLong((int) ((slot & segmentMask) * SLOT_BYTES));
+        }
+
+        private void copy(long from, long to) {
+            ByteBuffer source = segments[(int) (from >>> segmentShift)];
+            ByteBuffer target = segments[(int) (to >>> segmentShift)];
+            int sourceOffset = (int) ((from & segmentMask) * SLOT_BYTES);
+            int targetOffset = (int) ((to & segmentMask) * SLOT_BYTES);
+            for (int i = 0; i < SLOT_BYTES; i += 8) {
+                target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+            }
+        }
+
+        private static long mix(long value) {
+            value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+            value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+            return value ^ (value >>> 31);
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ package com.bod.accounts.mapper;
 
 import com.bod.accounts.dto.AccountsDto;
 import com.bod.accounts.entity.Accounts;
+import com.bod.accounts.projection.CustomerAccountsView;
 
 public class AccountsMapper {
 
@@ -11,6 +12,15 @@ public class AccountsMapper {
         accountsDto.setAccountNumber(accounts.getAccountNumber());
         accountsDto.setAccountType(accounts.getAccountType());
         accountsDto.setBranchAddress(accounts.getBranchAddress());
+        accountsDto.setVersion(accounts.getVersion());
+        return accountsDto;
+    }
+
+    public static AccountsDto mapToAccountsDto(CustomerAccountsView view, AccountsDto accountsDto) {
+        accountsDto.setAccountNumber(view.accountNumber());
+        accountsDto.setAccountType(view.accountType());
+        accountsDto.setBranchAddress(view.branchAddress());
+        accountsDto.setVersion(view.accountVersion());
         return accountsDto;
     }
 
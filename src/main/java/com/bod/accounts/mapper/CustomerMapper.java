@@ -4,6 +4,7 @@ package com.bod.accounts.mapper;
 
 import com.bod.accounts.dto.CustomerDto;
 import com.bod.accounts.entity.Customer;
+import com.bod.accounts.projection.CustomerAccountsView;
 
 public class CustomerMapper {
 
@@ -11,6 +12,15 @@ public class CustomerMapper {
         customerDto.setName(customer.getName());
         customerDto.setEmail(customer.getEmail());
         customerDto.setMobileNumber(customer.getMobileNumber());
+        customerDto.setVersion(customer.getVersion());
+        return customerDto;
+    }
+
+    public static CustomerDto mapToCustomerDto(CustomerAccountsView view, CustomerDto customerDto) {
+        customerDto.setName(view.name());
+        customerDto.setEmail(view.email());
+        customerDto.setMobileNumber(view.mobileNumber());
+        customerDto.setVersion(view.customerVersion());
         return customerDto;
     }
 
@@ -0,0 +1,73 @@
+package com.bod.accounts.metrics;
+
+import com.bod.accounts.exception.CustomerAlreadyExistsException;
+import com.bod.accounts.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every {@code IAccountsService} call as {@code accounts.service} and
+ * records the SQL statements it ran as {@code accounts.service.statements}, both
+ * tagged by method and outcome ({@code success}, {@code ResourceNotFoundException},
+ * {@code CustomerAlreadyExistsException} or {@code error}).
+ * <p>
+ * It wraps the cache and transaction advice, so cache hits show up as calls
+ * without statements and commit time is part of the call.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@AllArgsConstructor
+public class ServiceMetricsAspect {
+
+    static final String SUCCESS = "success";
+    static final String ERROR = "error";
+
+    private MeterRegistry meterRegistry;
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Around("execution(* com.bod.accounts.service.IAccountsService.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        long statementsBefore = sqlStatementCounter.count();
+        long start = System.nanoTime();
+        String outcome = SUCCESS;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable throwable) {
+            outcome = outcome(throwable);
+            throw throwable;
+        } finally {
+            String method = joinPoint.getSignature().getName();
+            Timer.builder("accounts.service")
+                    .description("Time spent in each accounts service call")
+                    .tags("method", method, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("accounts.service.statements")
+                    .description("SQL statements run by each accounts service call")
+                    .baseUnit("statements")
+                    .tags("method", method, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(sqlStatementCounter.count() - statementsBefore);
+        }
+    }
+
+    private static String outcome(Throwable throwable) {
+        if (throwable instanceof ResourceNotFoundException || throwable instanceof CustomerAlreadyExistsException) {
+            return throwable.getClass().getSimpleName();
+        }
+        return ERROR;
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.bod.accounts.projection;
+
+/**
+ * Mobile number of a customer with the ids of the customer and its account.
+ */
+public record CustomerAccountIds(String mobileNumber,
+                                 Long customerId,
+                                 Long accountNumber) {
+}
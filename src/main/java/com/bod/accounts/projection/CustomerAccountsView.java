@@ -0,0 +1,17 @@
+package com.bod.accounts.projection;
+
+/**
+ * Read-only row of a customer joined with its account, built directly by the
+ * query so no managed entities are loaded. The account columns are null when
+ * the customer has no account.
+ */
+public record CustomerAccountsView(Long customerId,
+                                   String name,
+                                   String email,
+                                   String mobileNumber,
+                                   Long accountNumber,
+                                   String accountType,
+                                   String branchAddress,
+                                   Long customerVersion,
+                                   Long accountVersion) {
+}
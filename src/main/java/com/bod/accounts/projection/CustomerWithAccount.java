@@ -0,0 +1,13 @@
+package com.bod.accounts.projection;
+
+import com.bod.accounts.entity.Accounts;
+import com.bod.accounts.entity.Customer;
+
+/**
+ * Customer and its account read by one query as managed entities, so they can
+ * be changed in the same transaction. The account is null when the customer
+ * has no account.
+ */
+public record CustomerWithAccount(Customer customer,
+                                  Accounts account) {
+}
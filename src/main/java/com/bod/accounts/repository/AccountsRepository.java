@@ -1,11 +1,14 @@
 package com.bod.accounts.repository;
 
 import com.bod.accounts.entity.Accounts;
-import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,8 +16,30 @@ public interface AccountsRepository extends JpaRepository<Accounts, Long> {
 
     Optional<Accounts> findByCustomerId(Long customerId);
 
+    /**
+     * @return the deleted accounts
+     */
     @Transactional
     @Modifying
-    void deleteByCustomerId(Long customerId);
+    List<Accounts> deleteByCustomerId(Long customerId);
+
+    /**
+     * @param afterAccountNumber - Last account number of the previous page, 0 for the first page
+     * @return the accounts of the branch after the given account number, in account number order
+     */
+    @Transactional(readOnly = true)
+    @Query("select a from Accounts a where a.branchAddress = :branchAddress and a.accountNumber > :afterAccountNumber "
+            + "order by a.accountNumber")
+    List<Accounts> findPageByBranchAddress(String branchAddress, Long afterAccountNumber, Limit limit);
+
+    /**
+     * @param afterAccountNumber - Last account number of the previous page, 0 for the first page
+     * @return the accounts of the branch and type after the given account number, in account number order
+     */
+    @Transactional(readOnly = true)
+    @Query("select a from Accounts a where a.branchAddress = :branchAddress and a.accountType = :accountType "
+            + "and a.accountNumber > :afterAccountNumber order by a.accountNumber")
+    List<Accounts> findPageByBranchAddressAndAccountType(String branchAddress, String accountType,
+                                                         Long afterAccountNumber, Limit limit);
 
 }
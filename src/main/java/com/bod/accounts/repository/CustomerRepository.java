@@ -1,14 +1,169 @@
 package com.bod.accounts.repository;
 
 
+import com.bod.accounts.entity.Accounts;
 import com.bod.accounts.entity.Customer;
+import com.bod.accounts.projection.CustomerAccountIds;
+import com.bod.accounts.projection.CustomerAccountsView;
+import com.bod.accounts.projection.CustomerWithAccount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
     Optional<Customer> findByMobileNumber(String mobileNumber);
+
+    /**
+     * Inserts the customer and its account in one statement. Nothing is inserted
+     * when the mobile number is already registered, including by a concurrent
+     * call; the unique index on {@code mobile_number} decides.
+     *
+     * @param customer - Customer to insert, with its audit columns set
+     * @param account - Account to open for it, with its account number and audit columns set
+     * @return the id of the new customer, or empty if the mobile number is already registered
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = "with new_customer as ("
+            + "insert into customer (name, email, mobile_number, created_at, created_by) "
+            + "values (:#{#customer.name}, :#{#customer.email}, :#{#customer.mobileNumber}, "
+            + ":#{#customer.createdAt}, :#{#customer.createdBy}) "
+            + "on conflict (mobile_number) do nothing "
+            + "returning customer_id) "
+            + "insert into accounts (customer_id, account_number, account_type, branch_address, created_at, created_by) "
+            + "select customer_id, :#{#account.accountNumber}, :#{#account.accountType}, :#{#account.branchAddress}, "
+            + ":#{#account.createdAt}, :#{#account.createdBy} from new_customer "
+            + "returning cast(customer_id as bigint)")
+    Optional<Long> insertCustomerWithAccount(Customer customer, Accounts account);
+
+    /**
+     * Inserts many customers with an account each in one statement. Customers
+     * whose mobile number is already registered, including by a concurrent
+     * call, are skipped along with their account, as in
+     * {@link #insertCustomerWithAccount}. The customers need distinct mobile
+     * numbers.
+     *
+     * @param customers - Customers to insert
+     * @param accounts - Account to open for the customer at the same position, with its account number set
+     * @param createdAt - Creation time of every row
+     * @param createdBy - Auditor of every row
+     * @return the ids of the customers inserted and their accounts, in no particular order
+     */
+    default List<CustomerAccountIds> insertCustomersWithAccounts(List<Customer> customers, List<Accounts> accounts,
+                                                                 LocalDateTime createdAt, String createdBy) {
+        if (customers.isEmpty()) {
+            return List.of();
+        }
+        String[] names = new String[customers.size()];
+        String[] emails = new String[customers.size()];
+        String[] mobileNumbers = new String[customers.size()];
+        Long[] accountNumbers = new Long[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            names[i] = customers.get(i).getName();
+            emails[i] = customers.get(i).getEmail();
+            mobileNumbers[i] = customers.get(i).getMobileNumber();
+            accountNumbers[i] = accounts.get(i).getAccountNumber();
+        }
+        return insertCustomersWithAccounts(names, emails, mobileNumbers, accountNumbers,
+                accounts.get(0).getAccountType(), accounts.get(0).getBranchAddress(), createdAt, createdBy)
+                .stream()
+                .map(row -> new CustomerAccountIds((String) row[0], ((Number) row[1]).longValue(),
+                        ((Number) row[2]).longValue()))
+                .toList();
+    }
+
+    /**
+     * Element i of the arrays describes the i-th customer and its account.
+     *
+     * @return mobile number, customer id and account number of every customer inserted
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = "with input as ("
+            + "select * from unnest(cast(:names as varchar[]), cast(:emails as varchar[]), "
+            + "cast(:mobileNumbers as varchar[]), cast(:accountNumbers as bigint[])) "
+            + "as i (name, email, mobile_number, account_number)), "
+            + "new_customer as ("
+            + "insert into customer (name, email, mobile_number, created_at, created_by) "
+            + "select name, email, mobile_number, :createdAt, :createdBy from input "
+            + "on conflict (mobile_number) do nothing "
+            + "returning customer_id, mobile_number), "
+            + "new_account as ("
+            + "insert into accounts (customer_id, account_number, account_type, branch_address, created_at, created_by) "
+            + "select n.customer_id, i.account_number, :accountType, :branchAddress, :createdAt, :createdBy "
+            + "from new_customer n join input i on i.mobile_number = n.mobile_number "
+            + "returning customer_id, account_number) "
+            + "select n.mobile_number, cast(n.customer_id as bigint), cast(a.account_number as bigint) "
+            + "from new_customer n join new_account a on a.customer_id = n.customer_id")
+    List<Object[]> insertCustomersWithAccounts(String[] names, String[] emails, String[] mobileNumbers,
+                                               Long[] accountNumbers, String accountType, String branchAddress,
+                                               LocalDateTime createdAt, String createdBy);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.bod.accounts.projection.CustomerAccountsView(c.customerId, c.name, c.email, c.mobileNumber, "
+            + "a.accountNumber, a.accountType, a.branchAddress, c.version, a.version) "
+            + "from Customer c left join Accounts a on a.customerId = c.customerId "
+            + "where c.mobileNumber = :mobileNumber")
+    Optional<CustomerAccountsView> findCustomerAccountsByMobileNumber(String mobileNumber);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.bod.accounts.projection.CustomerAccountsView(c.customerId, c.name, c.email, c.mobileNumber, "
+            + "a.accountNumber, a.accountType, a.branchAddress, c.version, a.version) "
+            + "from Customer c left join Accounts a on a.customerId = c.customerId "
+            + "where c.customerId = :customerId")
+    Optional<CustomerAccountsView> findCustomerAccountsByCustomerId(Long customerId);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.bod.accounts.projection.CustomerAccountsView(c.customerId, c.name, c.email, c.mobileNumber, "
+            + "a.accountNumber, a.accountType, a.branchAddress, c.version, a.version) "
+            + "from Customer c left join Accounts a on a.customerId = c.customerId "
+            + "where c.mobileNumber in :mobileNumbers")
+    List<CustomerAccountsView> findCustomerAccountsByMobileNumberIn(Collection<String> mobileNumbers);
+
+    @Query("select new com.bod.accounts.projection.CustomerWithAccount(c, a) "
+            + "from Customer c left join Accounts a on a.customerId = c.customerId "
+            + "where c.mobileNumber = :mobileNumber")
+    Optional<CustomerWithAccount> findCustomerWithAccountByMobileNumber(String mobileNumber);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.bod.accounts.projection.CustomerAccountsView(c.customerId, c.name, c.email, c.mobileNumber, "
+            + "a.accountNumber, a.accountType, a.branchAddress, c.version, a.version) "
+            + "from Customer c left join Accounts a on a.customerId = c.customerId "
+            + "order by c.customerId")
+    Stream<CustomerAccountsView> streamAllCustomerAccounts();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("select new com.bod.accounts.projection.CustomerAccountIds(c.mobileNumber, c.customerId, a.accountNumber) "
+            + "from Customer c join Accounts a on a.customerId = c.customerId")
+    Stream<CustomerAccountIds> streamAllCustomerAccountIds();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("select c.mobileNumber from Customer c")
+    Stream<String> streamAllMobileNumbers();
+
+
+    /**
+     * Deletes the customer in one statement and returns the row as it was, so
+     * the change history gets every value without a lookup first.
+     *
+     * @param customerId - Id of the customer to delete
+     * @param mobileNumber - Mobile Number the customer must still be registered with
+     * @return the deleted customer, or empty if no customer has that id and mobile number
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = "with deleted as ("
+            + "delete from customer where customer_id = :customerId and mobile_number = :mobileNumber "
+            + "returning *) "
+            + "select * from deleted")
+    Optional<Customer> deleteByCustomerIdAndMobileNumber(Long customerId, String mobileNumber);
 }
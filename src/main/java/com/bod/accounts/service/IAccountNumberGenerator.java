@@ -0,0 +1,11 @@
+package com.bod.accounts.service;
+
+public interface IAccountNumberGenerator {
+
+    /**
+     *
+     * @return a new 10 digit account number, never handed out before by any instance of the service
+     */
+    long nextAccountNumber();
+
+}
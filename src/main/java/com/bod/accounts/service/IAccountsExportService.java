@@ -0,0 +1,16 @@
+package com.bod.accounts.service;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface IAccountsExportService {
+
+    /**
+     *
+     * @param format - Format to write the rows in
+     * @param outputStream - Stream every customer and its account is written to, one row at a time
+     */
+    void exportAccounts(ExportFormat format, OutputStream outputStream) throws IOException;
+
+}
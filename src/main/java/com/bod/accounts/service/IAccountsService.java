@@ -1,7 +1,13 @@
 package com.bod.accounts.service;
 
 
+import com.bod.accounts.dto.AccountsPageDto;
+import com.bod.accounts.dto.BatchFetchResponseDto;
+import com.bod.accounts.dto.BatchResponseDto;
 import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.dto.CustomerPatchDto;
+
+import java.util.List;
 
 public interface IAccountsService {
 
@@ -11,6 +17,13 @@ public interface IAccountsService {
      */
     void createAccount(CustomerDto customerDto);
 
+    /**
+     *
+     * @param customerDtos - CustomerDto Objects to onboard in one go
+     * @return the outcome of every item, in the order of the input
+     */
+    List<BatchResponseDto> createAccounts(List<CustomerDto> customerDtos);
+
     /**
      *
      * @param mobileNumber - Input Mobile Number
@@ -18,6 +31,23 @@ public interface IAccountsService {
      */
     CustomerDto fetchAccount(String mobileNumber);
 
+    /**
+     *
+     * @param mobileNumbers - Mobile Numbers to look up in one go
+     * @return Accounts Details of the mobile numbers found, and the mobile numbers that were not
+     */
+    BatchFetchResponseDto fetchAccounts(List<String> mobileNumbers);
+
+    /**
+     *
+     * @param branchAddress - Branch of the accounts
+     * @param accountType - Type of the accounts, null for every type
+     * @param pageToken - nextPageToken of the previous page, null for the first page
+     * @param pageSize - Maximum number of accounts on the page
+     * @return one page of the accounts, in account number order
+     */
+    AccountsPageDto listAccounts(String branchAddress, String accountType, String pageToken, int pageSize);
+
     /**
      *
      * @param customerDto - CustomerDto Object
@@ -25,6 +55,14 @@ public interface IAccountsService {
      */
     boolean updateAccount(CustomerDto customerDto);
 
+    /**
+     *
+     * @param mobileNumber - Mobile Number the customer is registered with
+     * @param customerPatchDto - Fields to change, with the versions they were made against
+     * @return Accounts Details after the change, with their new versions
+     */
+    CustomerDto patchAccount(String mobileNumber, CustomerPatchDto customerPatchDto);
+
     /**
      *
      * @param mobileNumber - Input Mobile Number
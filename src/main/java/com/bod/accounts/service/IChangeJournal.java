@@ -0,0 +1,15 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.journal.AccountChange;
+
+public interface IChangeJournal {
+
+    /**
+     * Appends the change to the history without waiting for it to be written.
+     * Inside a transaction the change is only appended once it commits.
+     *
+     * @param change - Customer or account mutation
+     */
+    void record(AccountChange change);
+
+}
@@ -0,0 +1,25 @@
+package com.bod.accounts.service;
+
+import java.util.function.Supplier;
+
+public interface IFetchCoalescer {
+
+    /**
+     * Runs the load, unless one for the same key is running already: then waits
+     * for that one and returns its result, or throws what it threw.
+     *
+     * @param key - Key of the load, such as a mobile number
+     * @param load - Load to run when none is running for the key
+     * @return what the load returned
+     */
+    <T> T load(String key, Supplier<T> load);
+
+    /**
+     * Loads for the key started from now on, and after the commit when in a
+     * transaction, do not join one that may have read the data before this write.
+     *
+     * @param key - Key whose data was written
+     */
+    void written(String key);
+
+}
@@ -0,0 +1,46 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.exception.IdempotencyKeyInUseException;
+import com.bod.accounts.exception.IdempotencyKeyMismatchException;
+import com.bod.accounts.idempotency.IdempotentResponse;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IIdempotencyStore {
+
+    /**
+     * Claims the key for a request, or returns the response of the earlier
+     * request with the key. While another request holds the key, waits for it
+     * to finish; if it fails, the key is claimed again.
+     *
+     * @param key - Idempotency-Key sent by the client
+     * @param fingerprint - Hash of the method, path, query and body of the request
+     * @param claim - Token of this request's claim, unique per request, passed again to complete or release
+     * @return the stored response, or empty if the caller now holds the key and has to run the request
+     * @throws IdempotencyKeyMismatchException if the key was used for a different request
+     * @throws IdempotencyKeyInUseException if the request holding the key is still running after the wait timeout
+     */
+    Optional<IdempotentResponse> claim(String key, String fingerprint, UUID claim);
+
+    /**
+     * Stores the response of the request holding the key and hands it to the
+     * requests waiting on it. Does nothing if the claim ran out and the key
+     * has been claimed by another request since.
+     *
+     * @param key - Idempotency-Key the caller claimed
+     * @param claim - Token the caller claimed the key with
+     * @param response - Response to answer retries with
+     */
+    void complete(String key, UUID claim, IdempotentResponse response);
+
+    /**
+     * Gives the key up without a response, so the next request with it runs.
+     * Does nothing if the key is no longer held with the claim.
+     *
+     * @param key - Idempotency-Key the caller claimed
+     * @param claim - Token the caller claimed the key with
+     */
+    void release(String key, UUID claim);
+
+}
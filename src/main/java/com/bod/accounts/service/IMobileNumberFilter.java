@@ -0,0 +1,26 @@
+package com.bod.accounts.service;
+
+public interface IMobileNumberFilter {
+
+    /**
+     *
+     * @param mobileNumber - Input Mobile Number
+     * @return true only if no customer is registered with the mobile number, false if one may be
+     */
+    boolean isDefinitelyAbsent(String mobileNumber);
+
+    /**
+     * Must be called before the customer is written, so the number is never
+     * reported absent once it can be read.
+     *
+     * @param mobileNumber - Mobile Number about to be registered
+     */
+    void registered(String mobileNumber);
+
+    /**
+     *
+     * @param mobileNumber - Mobile Number no longer registered
+     */
+    void deregistered(String mobileNumber);
+
+}
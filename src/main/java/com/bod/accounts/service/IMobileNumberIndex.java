@@ -0,0 +1,28 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.projection.CustomerAccountIds;
+
+import java.util.Optional;
+
+public interface IMobileNumberIndex {
+
+    /**
+     *
+     * @param mobileNumber - Input Mobile Number
+     * @return the ids last indexed for the mobile number, which may be stale; empty does not mean it is unregistered
+     */
+    Optional<CustomerAccountIds> find(String mobileNumber);
+
+    /**
+     *
+     * @param ids - Mobile Number with the ids of the customer and account registered with it
+     */
+    void put(CustomerAccountIds ids);
+
+    /**
+     *
+     * @param mobileNumber - Mobile Number no longer registered
+     */
+    void remove(String mobileNumber);
+
+}
@@ -0,0 +1,24 @@
+package com.bod.accounts.service;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+public interface IReadYourWrites {
+
+    /**
+     * Reads of the mobile number see this write from now on, also when they
+     * would otherwise be served by a replica that has not replayed it yet.
+     *
+     * @param mobileNumber - Mobile Number of the customer written
+     */
+    void written(String mobileNumber);
+
+    /**
+     *
+     * @param mobileNumbers - Mobile Numbers the read is about
+     * @param read - Read to run, on the primary if any of the mobile numbers was written just now
+     * @return what the read returned
+     */
+    <T> T read(Collection<String> mobileNumbers, Supplier<T> read);
+
+}
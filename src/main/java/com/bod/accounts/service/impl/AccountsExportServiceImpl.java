@@ -0,0 +1,111 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.mapper.AccountsMapper;
+import com.bod.accounts.mapper.CustomerMapper;
+import com.bod.accounts.projection.CustomerAccountsView;
+import com.bod.accounts.repository.CustomerRepository;
+import com.bod.accounts.service.ExportFormat;
+import com.bod.accounts.service.IAccountsExportService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@AllArgsConstructor
+public class AccountsExportServiceImpl implements IAccountsExportService {
+
+    private static final String CSV_HEADER = "name,email,mobileNumber,accountNumber,accountType,branchAddress\n";
+
+    private CustomerRepository customerRepository;
+    private ObjectMapper objectMapper;
+
+    /**
+     * Rows are read through a server-side cursor and written as they arrive. They
+     * are built straight from the query as projections, so nothing accumulates in
+     * the persistence context and memory use does not depend on the row count.
+     *
+     * @param format - Format to write the rows in
+     * @param outputStream - Stream every customer and its account is written to, one row at a time
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAccounts(ExportFormat format, OutputStream outputStream) throws IOException {
+        try (Stream<CustomerAccountsView> rows = customerRepository.streamAllCustomerAccounts()) {
+            switch (format) {
+                case NDJSON -> writeNdjson(rows.iterator(), outputStream);
+                case CSV -> writeCsv(rows.iterator(), outputStream);
+            }
+        }
+    }
+
+    private void writeNdjson(Iterator<CustomerAccountsView> rows, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(CustomerDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (rows.hasNext()) {
+                writer.writeValue(generator, toCustomerDto(rows.next()));
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private void writeCsv(Iterator<CustomerAccountsView> rows, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        while (rows.hasNext()) {
+            CustomerAccountsView row = rows.next();
+            writeCsvField(writer, row.name());
+            writer.write(',');
+            writeCsvField(writer, row.email());
+            writer.write(',');
+            writeCsvField(writer, row.mobileNumber());
+            writer.write(',');
+            writeCsvField(writer, row.accountNumber() == null ? null : row.accountNumber().toString());
+            writer.write(',');
+            writeCsvField(writer, row.accountType());
+            writer.write(',');
+            writeCsvField(writer, row.branchAddress());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static CustomerDto toCustomerDto(CustomerAccountsView row) {
+        CustomerDto customerDto = CustomerMapper.mapToCustomerDto(row, new CustomerDto());
+        if (row.accountNumber() != null) {
+            customerDto.setAccountsDto(AccountsMapper.mapToAccountsDto(row, new AccountsDto()));
+        }
+        return customerDto;
+    }
+
+}
@@ -2,43 +2,188 @@ package com.bod.accounts.service.impl;
 
 import com.bod.accounts.constants.AccountsConstants;
 import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.AccountsPageDto;
+import com.bod.accounts.dto.BatchFetchResponseDto;
+import com.bod.accounts.dto.BatchResponseDto;
+import com.bod.accounts.dto.AccountsPatchDto;
 import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.dto.CustomerPatchDto;
 import com.bod.accounts.entity.Accounts;
 import com.bod.accounts.entity.Customer;
 import com.bod.accounts.exception.CustomerAlreadyExistsException;
+import com.bod.accounts.exception.InvalidPageTokenException;
 import com.bod.accounts.exception.ResourceNotFoundException;
+import com.bod.accounts.exception.VersionConflictException;
+import com.bod.accounts.journal.AccountChange;
 import com.bod.accounts.mapper.AccountsMapper;
 import com.bod.accounts.mapper.CustomerMapper;
+import com.bod.accounts.projection.CustomerAccountIds;
+import com.bod.accounts.projection.CustomerAccountsView;
+import com.bod.accounts.projection.CustomerWithAccount;
 import com.bod.accounts.repository.AccountsRepository;
 import com.bod.accounts.repository.CustomerRepository;
+import com.bod.accounts.service.IAccountNumberGenerator;
 import com.bod.accounts.service.IAccountsService;
+import com.bod.accounts.service.IChangeJournal;
+import com.bod.accounts.service.IFetchCoalescer;
+import com.bod.accounts.service.IMobileNumberFilter;
+import com.bod.accounts.service.IMobileNumberIndex;
+import com.bod.accounts.service.IReadYourWrites;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class AccountsServiceImpl  implements IAccountsService {
 
+    /**
+     * Slots the cached account writes are counted in, a power of two. Mobile
+     * numbers sharing a slot only cost each other a cache put.
+     */
+    private static final int WRITE_STRIPES = 4096;
+
     private AccountsRepository accountsRepository;
     private CustomerRepository customerRepository;
+    private CacheManager cacheManager;
+    private Validator validator;
+    private IAccountNumberGenerator accountNumberGenerator;
+    private AuditorAware<String> auditorAware;
+    private IMobileNumberFilter mobileNumberFilter;
+    private IMobileNumberIndex mobileNumberIndex;
+    private IChangeJournal changeJournal;
+    private IReadYourWrites readYourWrites;
+    private IFetchCoalescer fetchCoalescer;
+    /**
+     * Writes that dropped cached account details, per slot of mobile numbers
+     */
+    private final AtomicLongArray cachedAccountWrites = new AtomicLongArray(WRITE_STRIPES);
 
     /**
+     * Inserts the customer and the account in one statement, so there is no
+     * lookup first and concurrent requests for one mobile number cannot both
+     * succeed.
+     *
      * @param customerDto - CustomerDto Object
      */
     @Override
     public void createAccount(CustomerDto customerDto) {
         Customer customer = CustomerMapper.mapToCustomer(customerDto, new Customer());
-        Optional<Customer> optionalCustomer = customerRepository.findByMobileNumber(customerDto.getMobileNumber());
-        if(optionalCustomer.isPresent()) {
-            throw new CustomerAlreadyExistsException("Customer already registered with given mobileNumber "
-                    +customerDto.getMobileNumber());
+        customer.setCreatedAt(LocalDateTime.now());
+        customer.setCreatedBy(auditorAware.getCurrentAuditor().orElseThrow());
+        Accounts account = createNewAccount(customer);
+        account.setCreatedAt(customer.getCreatedAt());
+        account.setCreatedBy(customer.getCreatedBy());
+        mobileNumberFilter.registered(customer.getMobileNumber());
+        Long customerId = customerRepository.insertCustomerWithAccount(customer, account).orElseThrow(
+                () -> new CustomerAlreadyExistsException("Customer already registered with given mobileNumber "
+                        + customerDto.getMobileNumber())
+        );
+        mobileNumberIndex.put(new CustomerAccountIds(customer.getMobileNumber(), customerId, account.getAccountNumber()));
+        written(customer.getMobileNumber());
+        customer.setCustomerId(customerId);
+        account.setCustomerId(customerId);
+        recordChange(AccountChange.ofCustomer(null, AccountChange.snapshot(customer)));
+        recordChange(AccountChange.ofAccount(null, AccountChange.snapshot(account)));
+    }
+
+    /**
+     * Validates every item on its own and inserts the valid customers with
+     * their accounts in one {@code ON CONFLICT} statement, so a mobile number
+     * registered before or during the call is reported on its item instead
+     * of failing the whole batch.
+     *
+     * @param customerDtos - CustomerDto Objects to onboard in one go
+     * @return the outcome of every item, in the order of the input
+     */
+    @Override
+    @Transactional
+    public List<BatchResponseDto> createAccounts(List<CustomerDto> customerDtos) {
+        BatchResponseDto[] results = new BatchResponseDto[customerDtos.size()];
+        Set<String> seen = new HashSet<>();
+        List<Integer> accepted = new ArrayList<>();
+        List<Customer> customers = new ArrayList<>();
+        List<Accounts> accounts = new ArrayList<>();
+        for (int i = 0; i < customerDtos.size(); i++) {
+            CustomerDto customerDto = customerDtos.get(i);
+            Set<ConstraintViolation<CustomerDto>> violations = validator.validate(customerDto);
+            if (!violations.isEmpty()) {
+                results[i] = new BatchResponseDto(customerDto.getMobileNumber(), AccountsConstants.STATUS_400,
+                        violations.stream().map(ConstraintViolation::getMessage).sorted()
+                                .collect(Collectors.joining(", ")));
+            } else if (!seen.add(customerDto.getMobileNumber())) {
+                results[i] = alreadyRegistered(customerDto.getMobileNumber());
+            } else {
+                Customer customer = CustomerMapper.mapToCustomer(customerDto, new Customer());
+                accepted.add(i);
+                customers.add(customer);
+                accounts.add(createNewAccount(customer));
+            }
+        }
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        String createdBy = auditorAware.getCurrentAuditor().orElseThrow();
+        customers.forEach(customer -> mobileNumberFilter.registered(customer.getMobileNumber()));
+        Map<String, CustomerAccountIds> inserted = new HashMap<>();
+        for (CustomerAccountIds ids : customerRepository.insertCustomersWithAccounts(customers, accounts, createdAt, createdBy)) {
+            inserted.put(ids.mobileNumber(), ids);
         }
-        Customer savedCustomer = customerRepository.save(customer);
-        accountsRepository.save(createNewAccount(savedCustomer));
+        for (int j = 0; j < accepted.size(); j++) {
+            Customer customer = customers.get(j);
+            Accounts account = accounts.get(j);
+            CustomerAccountIds ids = inserted.get(customer.getMobileNumber());
+            if (ids == null) {
+                results[accepted.get(j)] = alreadyRegistered(customer.getMobileNumber());
+                continue;
+            }
+            customer.setCustomerId(ids.customerId());
+            customer.setCreatedAt(createdAt);
+            customer.setCreatedBy(createdBy);
+            account.setCustomerId(ids.customerId());
+            account.setCreatedAt(createdAt);
+            account.setCreatedBy(createdBy);
+            mobileNumberIndex.put(ids);
+            written(customer.getMobileNumber());
+            recordChange(AccountChange.ofCustomer(null, AccountChange.snapshot(customer)));
+            recordChange(AccountChange.ofAccount(null, AccountChange.snapshot(account)));
+            results[accepted.get(j)] = new BatchResponseDto(customer.getMobileNumber(), AccountsConstants.STATUS_201,
+                    AccountsConstants.MESSAGE_201);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @param mobileNumber - Mobile Number of the batch item
+     * @return the outcome of a batch item whose mobile number is already registered
+     */
+    private static BatchResponseDto alreadyRegistered(String mobileNumber) {
+        return new BatchResponseDto(mobileNumber, AccountsConstants.STATUS_400,
+                "Customer already registered with given mobileNumber " + mobileNumber);
     }
 
     /**
@@ -48,36 +193,179 @@ public class AccountsServiceImpl  implements IAccountsService {
     private Accounts createNewAccount(Customer customer) {
         Accounts newAccount = new Accounts();
         newAccount.setCustomerId(customer.getCustomerId());
-        long randomAccNumber = 1000000000L + new Random().nextInt(900000000);
-
-        newAccount.setAccountNumber(randomAccNumber);
+        newAccount.setAccountNumber(accountNumberGenerator.nextAccountNumber());
         newAccount.setAccountType(AccountsConstants.SAVINGS);
         newAccount.setBranchAddress(AccountsConstants.ADDRESS);
         return newAccount;
     }
 
     /**
+     * Served from the accounts cache when it holds the mobile number. On a
+     * miss, concurrent fetches of one mobile number share a single lookup
+     * through the {@link IFetchCoalescer}, and the result is cached. A write
+     * that commits while the lookup runs drops the cached details before the
+     * lookup has put its result, which may have been read before the write;
+     * the lookup then drops what it put, so the old details are not served
+     * for the whole time to live.
+     *
      * @param mobileNumber - Input Mobile Number
      * @return Accounts Details based on a given mobileNumber
      */
     @Override
     public CustomerDto fetchAccount(String mobileNumber) {
-        Customer customer = customerRepository.findByMobileNumber(mobileNumber).orElseThrow(
-                () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
-        );
-        Accounts accounts = accountsRepository.findByCustomerId(customer.getCustomerId()).orElseThrow(
-                () -> new ResourceNotFoundException("Account", "customerId", customer.getCustomerId().toString())
-        );
-        CustomerDto customerDto = CustomerMapper.mapToCustomerDto(customer, new CustomerDto());
-        customerDto.setAccountsDto(AccountsMapper.mapToAccountsDto(accounts, new AccountsDto()));
+        Cache cache = cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE);
+        CustomerDto cached = cache == null ? null : cache.get(mobileNumber, CustomerDto.class);
+        if (cached != null) {
+            return cached;
+        }
+        int stripe = writeStripe(mobileNumber);
+        long writes = cachedAccountWrites.get(stripe);
+        CustomerDto customerDto = loadAccount(mobileNumber);
+        if (cache != null) {
+            cache.put(mobileNumber, customerDto);
+            if (cachedAccountWrites.get(stripe) != writes) {
+                cache.evict(mobileNumber);
+            }
+        }
+        return customerDto;
+    }
+
+    /**
+     * @param mobileNumber - Input Mobile Number
+     * @return Accounts Details of the mobile number, read from the index, a replica or the primary
+     */
+    private CustomerDto loadAccount(String mobileNumber) {
+        if (mobileNumberFilter.isDefinitelyAbsent(mobileNumber)) {
+            throw new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber);
+        }
+        CustomerAccountsView view = fetchCoalescer.load(mobileNumber, () -> readYourWrites.read(List.of(mobileNumber),
+                () -> findIndexed(mobileNumber).or(() -> customerRepository.findCustomerAccountsByMobileNumber(mobileNumber))))
+                .orElseThrow(() -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber));
+        if (view.accountNumber() == null) {
+            throw new ResourceNotFoundException("Account", "customerId", view.customerId().toString());
+        }
+        return toCustomerDto(view);
+    }
+
+    /**
+     * Takes what it can from the accounts cache and the mobile number filter,
+     * and looks the rest up with one query. Customers without an account are
+     * reported missing, as {@link #fetchAccount} would. The results are not
+     * cached, so a statement run does not push out the numbers fetched one by one.
+     *
+     * @param mobileNumbers - Mobile Numbers to look up in one go
+     * @return Accounts Details of the mobile numbers found, and the mobile numbers that were not
+     */
+    @Override
+    public BatchFetchResponseDto fetchAccounts(List<String> mobileNumbers) {
+        Set<String> requested = new LinkedHashSet<>(mobileNumbers);
+        requested.remove(null);
+        Map<String, CustomerDto> found = new HashMap<>();
+        Set<String> uncached = new HashSet<>();
+        Cache cache = cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE);
+        for (String mobileNumber : requested) {
+            if (!mobileNumberFilter.isDefinitelyAbsent(mobileNumber)) {
+                CustomerDto cached = cache == null ? null : cache.get(mobileNumber, CustomerDto.class);
+                if (cached != null) {
+                    found.put(mobileNumber, cached);
+                } else {
+                    uncached.add(mobileNumber);
+                }
+            }
+        }
+        if (!uncached.isEmpty()) {
+            for (CustomerAccountsView view : readYourWrites.read(uncached,
+                    () -> customerRepository.findCustomerAccountsByMobileNumberIn(uncached))) {
+                if (view.accountNumber() != null) {
+                    found.put(view.mobileNumber(), toCustomerDto(view));
+                }
+            }
+        }
+        List<CustomerDto> accounts = new ArrayList<>(found.size());
+        List<String> missingMobileNumbers = new ArrayList<>();
+        for (String mobileNumber : requested) {
+            CustomerDto customerDto = found.get(mobileNumber);
+            if (customerDto != null) {
+                accounts.add(customerDto);
+            } else {
+                missingMobileNumbers.add(mobileNumber);
+            }
+        }
+        return new BatchFetchResponseDto(accounts, missingMobileNumbers);
+    }
+
+    /**
+     * Keyset pagination: a page is the accounts after the last account number of
+     * the previous one, read off the branch (and type) index, so page 10,000
+     * costs the same as page 1. One more row than asked is read to tell whether
+     * there is a next page. Accounts opened after a listing started show up in
+     * it if their number is past the current page.
+     *
+     * @param branchAddress - Branch of the accounts
+     * @param accountType - Type of the accounts, null for every type
+     * @param pageToken - nextPageToken of the previous page, null for the first page
+     * @param pageSize - Maximum number of accounts on the page
+     * @return one page of the accounts, in account number order
+     */
+    @Override
+    public AccountsPageDto listAccounts(String branchAddress, String accountType, String pageToken, int pageSize) {
+        long afterAccountNumber = pageToken == null || pageToken.isEmpty() ? 0 : decodePageToken(pageToken);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Accounts> rows = accountType == null || accountType.isEmpty()
+                ? accountsRepository.findPageByBranchAddress(branchAddress, afterAccountNumber, limit)
+                : accountsRepository.findPageByBranchAddressAndAccountType(branchAddress, accountType, afterAccountNumber, limit);
+        boolean hasNext = rows.size() > pageSize;
+        List<AccountsDto> accounts = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (Accounts account : hasNext ? rows.subList(0, pageSize) : rows) {
+            accounts.add(AccountsMapper.mapToAccountsDto(account, new AccountsDto()));
+        }
+        String nextPageToken = hasNext ? encodePageToken(accounts.get(pageSize - 1).getAccountNumber()) : null;
+        return new AccountsPageDto(accounts, nextPageToken);
+    }
+
+    /**
+     * The token is the last account number of the page, base64url encoded so
+     * clients treat it as opaque and it can change shape later.
+     */
+    private static String encodePageToken(Long lastAccountNumber) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastAccountNumber.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long decodePageToken(String pageToken) {
+        try {
+            long lastAccountNumber = Long.parseLong(new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.US_ASCII));
+            if (lastAccountNumber > 0) {
+                return lastAccountNumber;
+            }
+        } catch (IllegalArgumentException e) {
+            // not base64 or not a number, reported below
+        }
+        throw new InvalidPageTokenException(pageToken);
+    }
+
+    /**
+     * @param view - Customer joined with its account
+     * @return the Customer and Account details of the view
+     */
+    private static CustomerDto toCustomerDto(CustomerAccountsView view) {
+        CustomerDto customerDto = CustomerMapper.mapToCustomerDto(view, new CustomerDto());
+        customerDto.setAccountsDto(AccountsMapper.mapToAccountsDto(view, new AccountsDto()));
         return customerDto;
     }
 
     /**
+     * Reads and writes in one transaction, so the rows are read from the primary
+     * and not from a replica that may be behind. Each save is flushed before its
+     * change is recorded, so the history has the version it was saved at. A
+     * mobile number another customer holds fails on the unique index at the
+     * flush and is reported like on create.
+     *
      * @param customerDto - CustomerDto Object
      * @return boolean indicating if the update of Account details is successful or not
      */
     @Override
+    @Transactional
     public boolean updateAccount(CustomerDto customerDto) {
         boolean isUpdated = false;
         AccountsDto accountsDto = customerDto.getAccountsDto();
@@ -85,33 +373,234 @@ public class AccountsServiceImpl  implements IAccountsService {
             Accounts accounts = accountsRepository.findById(accountsDto.getAccountNumber()).orElseThrow(
                     () -> new ResourceNotFoundException("Account", "AccountNumber", accountsDto.getAccountNumber().toString())
             );
+            Map<String, Object> accountBefore = AccountChange.snapshot(accounts);
             AccountsMapper.mapToAccounts(accountsDto, accounts);
             accounts = accountsRepository.save(accounts);
+            accountsRepository.flush();
+            recordChange(AccountChange.ofAccount(accountBefore, AccountChange.snapshot(accounts)));
 
             Long customerId = accounts.getCustomerId();
             Customer customer = customerRepository.findById(customerId).orElseThrow(
                     () -> new ResourceNotFoundException("Customer", "CustomerID", customerId.toString())
             );
+            String previousMobileNumber = customer.getMobileNumber();
+            Map<String, Object> customerBefore = AccountChange.snapshot(customer);
             CustomerMapper.mapToCustomer(customerDto,customer);
-            customerRepository.save(customer);
+            boolean mobileNumberChanged = !Objects.equals(previousMobileNumber, customer.getMobileNumber());
+            if (mobileNumberChanged) {
+                mobileNumberFilter.registered(customer.getMobileNumber());
+            }
+            customer = customerRepository.save(customer);
+            try {
+                customerRepository.flush();
+            } catch (DataIntegrityViolationException e) {
+                throw new CustomerAlreadyExistsException("Customer already registered with given mobileNumber "
+                        + customer.getMobileNumber());
+            }
+            recordChange(AccountChange.ofCustomer(customerBefore, AccountChange.snapshot(customer)));
+            if (mobileNumberChanged) {
+                mobileNumberFilter.deregistered(previousMobileNumber);
+                mobileNumberIndex.remove(previousMobileNumber);
+                mobileNumberIndex.put(new CustomerAccountIds(customer.getMobileNumber(), customerId,
+                        accounts.getAccountNumber()));
+            }
+            evictCachedAccount(previousMobileNumber);
+            evictCachedAccount(customer.getMobileNumber());
+            written(previousMobileNumber);
+            written(customer.getMobileNumber());
             isUpdated = true;
         }
         return  isUpdated;
     }
 
     /**
+     * Reads the customer and its account in one query and applies only the
+     * given fields to them. Hibernate then updates each row that changed with
+     * {@code WHERE version = ?} in the same transaction, so a change made
+     * between the read and the write is not overwritten either; that surfaces
+     * as an {@code OptimisticLockingFailureException}.
+     *
+     * @param mobileNumber - Mobile Number the customer is registered with
+     * @param customerPatchDto - Fields to change, with the versions they were made against
+     * @return Accounts Details after the change, with their new versions
+     */
+    @Override
+    @Transactional
+    public CustomerDto patchAccount(String mobileNumber, CustomerPatchDto customerPatchDto) {
+        CustomerWithAccount current = customerRepository.findCustomerWithAccountByMobileNumber(mobileNumber).orElseThrow(
+                () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
+        );
+        Customer customer = current.customer();
+        Accounts account = current.account();
+        AccountsPatchDto accountsPatchDto = customerPatchDto.getAccountsDto();
+        if (customerPatchDto.getVersion() != null && !customerPatchDto.getVersion().equals(customer.getVersion())) {
+            throw new VersionConflictException("Customer", "mobileNumber", mobileNumber,
+                    customerPatchDto.getVersion(), customer.getVersion());
+        }
+        if (accountsPatchDto != null) {
+            if (account == null) {
+                throw new ResourceNotFoundException("Account", "customerId", customer.getCustomerId().toString());
+            }
+            if (!accountsPatchDto.getVersion().equals(account.getVersion())) {
+                throw new VersionConflictException("Account", "accountNumber", account.getAccountNumber().toString(),
+                        accountsPatchDto.getVersion(), account.getVersion());
+            }
+        }
+
+        Map<String, Object> customerBefore = AccountChange.snapshot(customer);
+        Map<String, Object> accountBefore = account == null ? null : AccountChange.snapshot(account);
+        Optional.ofNullable(customerPatchDto.getName()).ifPresent(customer::setName);
+        Optional.ofNullable(customerPatchDto.getEmail()).ifPresent(customer::setEmail);
+        Optional.ofNullable(customerPatchDto.getMobileNumber()).ifPresent(customer::setMobileNumber);
+        if (accountsPatchDto != null) {
+            Optional.ofNullable(accountsPatchDto.getAccountType()).ifPresent(account::setAccountType);
+            Optional.ofNullable(accountsPatchDto.getBranchAddress()).ifPresent(account::setBranchAddress);
+        }
+        boolean mobileNumberChanged = !mobileNumber.equals(customer.getMobileNumber());
+        if (mobileNumberChanged) {
+            mobileNumberFilter.registered(customer.getMobileNumber());
+        }
+        try {
+            customerRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new CustomerAlreadyExistsException("Customer already registered with given mobileNumber "
+                    + customer.getMobileNumber());
+        }
+
+        Map<String, Object> customerAfter = AccountChange.snapshot(customer);
+        if (!customerAfter.equals(customerBefore)) {
+            recordChange(AccountChange.ofCustomer(customerBefore, customerAfter));
+        }
+        if (account != null) {
+            Map<String, Object> accountAfter = AccountChange.snapshot(account);
+            if (!accountAfter.equals(accountBefore)) {
+                recordChange(AccountChange.ofAccount(accountBefore, accountAfter));
+            }
+        }
+        if (mobileNumberChanged) {
+            mobileNumberFilter.deregistered(mobileNumber);
+            mobileNumberIndex.remove(mobileNumber);
+            if (account != null) {
+                mobileNumberIndex.put(new CustomerAccountIds(customer.getMobileNumber(), customer.getCustomerId(),
+                        account.getAccountNumber()));
+            }
+            evictCachedAccount(customer.getMobileNumber());
+            written(customer.getMobileNumber());
+        }
+        evictCachedAccount(mobileNumber);
+        written(mobileNumber);
+
+        CustomerDto customerDto = CustomerMapper.mapToCustomerDto(customer, new CustomerDto());
+        if (account != null) {
+            customerDto.setAccountsDto(AccountsMapper.mapToAccountsDto(account, new AccountsDto()));
+        }
+        return customerDto;
+    }
+
+    /**
+     * Deletes straight by customer id when the mobile number is indexed, with
+     * the mobile number as a guard against a stale index entry; otherwise looks
+     * the customer up first. The cached details are dropped after the commit,
+     * like on update.
+     *
      * @param mobileNumber - Input Mobile Number
      * @return boolean indicating if the delete of Account details is successful or not
      */
     @Override
+    @Transactional
     public boolean deleteAccount(String mobileNumber) {
-        Customer customer = customerRepository.findByMobileNumber(mobileNumber).orElseThrow(
-                () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
-        );
-        accountsRepository.deleteByCustomerId(customer.getCustomerId());
-        customerRepository.deleteById(customer.getCustomerId());
+        if (mobileNumberFilter.isDefinitelyAbsent(mobileNumber)) {
+            throw new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber);
+        }
+        Customer customer = mobileNumberIndex.find(mobileNumber)
+                .flatMap(ids -> customerRepository.deleteByCustomerIdAndMobileNumber(ids.customerId(), mobileNumber))
+                .orElse(null);
+        if (customer == null) {
+            customer = customerRepository.findByMobileNumber(mobileNumber).orElseThrow(
+                    () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
+            );
+            customerRepository.deleteById(customer.getCustomerId());
+        }
+        Long customerId = customer.getCustomerId();
+        recordChange(AccountChange.ofCustomer(AccountChange.snapshot(customer), null));
+        accountsRepository.deleteByCustomerId(customerId)
+                .forEach(account -> recordChange(AccountChange.ofAccount(AccountChange.snapshot(account), null)));
+        mobileNumberFilter.deregistered(mobileNumber);
+        mobileNumberIndex.remove(mobileNumber);
+        evictCachedAccount(mobileNumber);
+        written(mobileNumber);
         return true;
     }
 
+    /**
+     * @param mobileNumber - Input Mobile Number
+     * @return the customer and account the index points at, if they still belong to the mobile number
+     */
+    private Optional<CustomerAccountsView> findIndexed(String mobileNumber) {
+        return mobileNumberIndex.find(mobileNumber)
+                .flatMap(ids -> customerRepository.findCustomerAccountsByCustomerId(ids.customerId()))
+                .filter(view -> mobileNumber.equals(view.mobileNumber()) && view.accountNumber() != null);
+    }
+
+    /**
+     * Journals the change once the surrounding transaction, if any, has
+     * committed. The change feed reads it from the change history.
+     *
+     * @param change - Customer or account mutation
+     */
+    private void recordChange(AccountChange change) {
+        changeJournal.record(change);
+    }
+
+    /**
+     * Keeps reads of the mobile number off replicas that may not have the
+     * write yet, and out of lookups that started before it.
+     *
+     * @param mobileNumber - Mobile Number of the customer written
+     */
+    private void written(String mobileNumber) {
+        readYourWrites.written(mobileNumber);
+        fetchCoalescer.written(mobileNumber);
+    }
+
+    /**
+     * Drops the cached account details of the given mobile number, if any.
+     * Updates are keyed by account number, so the mobile number is only known
+     * once the customer has been loaded and the eviction cannot be declared.
+     * Inside a transaction the details are dropped once it has committed: a
+     * fetch before that still reads the old row, and would put it back into the
+     * cache for the whole time to live. The write is counted before the
+     * details are dropped, so a fetch that puts them back afterwards sees it.
+     *
+     * @param mobileNumber - Mobile Number whose cached details are stale
+     */
+    private void evictCachedAccount(String mobileNumber) {
+        Cache cache = cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE);
+        if (cache == null || mobileNumber == null) {
+            return;
+        }
+        int stripe = writeStripe(mobileNumber);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cachedAccountWrites.incrementAndGet(stripe);
+            cache.evict(mobileNumber);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cachedAccountWrites.incrementAndGet(stripe);
+                cache.evict(mobileNumber);
+            }
+        });
+    }
+
+    /**
+     * @param mobileNumber - Mobile Number of a customer
+     * @return the slot of {@code cachedAccountWrites} that counts its writes
+     */
+    private static int writeStripe(String mobileNumber) {
+        int hash = mobileNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (WRITE_STRIPES - 1);
+    }
 
 }
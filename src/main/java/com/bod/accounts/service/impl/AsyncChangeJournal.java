@@ -0,0 +1,317 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.journal.AccountChange;
+import com.bod.accounts.service.IChangeJournal;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link AccountChange}s to {@code account_change_history} off the
+ * request path. Changes go into a bounded queue of
+ * {@code accounts.journal.capacity} entries, and one writer thread moves them
+ * to the table with {@code COPY}, up to {@code accounts.journal.batch-size}
+ * changes at a time, at least every {@code accounts.journal.flush-interval}.
+ * <p>
+ * Batches are written one at a time across all instances, under a
+ * transaction-level advisory lock, so {@code change_id}s become visible in the
+ * order they were given out; the change feed reads the table with the id as
+ * its cursor and would otherwise skip a batch that committed late.
+ * <p>
+ * Changes are written in the order they were queued. A batch that fails for a
+ * reason that may pass, such as a lost connection, a deadlock or the database
+ * shutting down, is retried until it is written. One that fails for any other
+ * reason, or without a SQLState to tell, is written change by change, and a change that still fails, say a
+ * {@code changed_by} too long for its column, is set aside: logged at ERROR
+ * with all its values and counted, so the writer carries on with the rest.
+ * When the queue is full the caller, whose transaction has already committed,
+ * waits up to {@code accounts.journal.put-timeout} for room, and the change is
+ * set aside the same way after that. On shutdown, which comes after the web
+ * server has stopped taking requests, the queue is drained for up to
+ * {@code accounts.journal.drain-timeout}; changes recorded after that are
+ * written by the caller.
+ * <p>
+ * Publishes the {@code accounts.journal.queue.depth} gauge, the
+ * {@code accounts.journal.flush} timer, the {@code accounts.journal.overflow}
+ * counter of changes that waited for room and the
+ * {@code accounts.journal.dead.letter} counter of changes set aside.
+ */
+@Slf4j
+@Component
+public class AsyncChangeJournal implements IChangeJournal, SmartLifecycle {
+
+    private static final String COPY_SQL = "COPY account_change_history "
+            + "(entity, entity_id, operation, before_values, after_values, changed_at, changed_by) "
+            + "FROM STDIN WITH (FORMAT csv)";
+    private static final String ORDER_LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('account_change_history'))";
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    /**
+     * SQLState classes of failures that may pass: connection exception,
+     * transaction rollback, insufficient resources and operator intervention.
+     */
+    private static final Set<String> TRANSIENT_SQL_STATE_CLASSES = Set.of("08", "40", "53", "57");
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final AuditorAware<String> auditorAware;
+    private final BlockingQueue<JournalEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration drainTimeout;
+    private final Duration putTimeout;
+    private final Timer flushTimer;
+    private final Counter overflow;
+    private final Counter deadLetter;
+    private volatile boolean running;
+    private Thread writer;
+
+    public AsyncChangeJournal(DataSource dataSource,
+                              ObjectMapper objectMapper,
+                              AuditorAware<String> auditorAware,
+                              MeterRegistry meterRegistry,
+                              @Value("${accounts.journal.capacity:8192}") int capacity,
+                              @Value("${accounts.journal.batch-size:500}") int batchSize,
+                              @Value("${accounts.journal.flush-interval:200ms}") Duration flushInterval,
+                              @Value("${accounts.journal.drain-timeout:30s}") Duration drainTimeout,
+                              @Value("${accounts.journal.put-timeout:1s}") Duration putTimeout) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.auditorAware = auditorAware;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.drainTimeout = drainTimeout;
+        this.putTimeout = putTimeout;
+        this.flushTimer = Timer.builder("accounts.journal.flush")
+                .description("Time to write one batch of the change history")
+                .register(meterRegistry);
+        this.overflow = Counter.builder("accounts.journal.overflow")
+                .description("Changes that had to wait for room in the queue")
+                .register(meterRegistry);
+        this.deadLetter = Counter.builder("accounts.journal.dead.letter")
+                .description("Changes that could not be written and were logged instead")
+                .register(meterRegistry);
+        Gauge.builder("accounts.journal.queue.depth", queue, BlockingQueue::size)
+                .description("Changes waiting to be written").register(meterRegistry);
+    }
+
+    @Override
+    public void record(AccountChange change) {
+        JournalEntry entry = new JournalEntry(change, LocalDateTime.now(), auditorAware.getCurrentAuditor().orElse(null));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(entry);
+                }
+            });
+        } else {
+            enqueue(entry);
+        }
+    }
+
+    private void enqueue(JournalEntry entry) {
+        if (!running) {
+            writeNow(List.of(entry));
+        } else if (!queue.offer(entry)) {
+            overflow.increment();
+            try {
+                if (!queue.offer(entry, putTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    setAside(entry, "the queue stayed full for " + putTimeout, null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writeNow(List.of(entry));
+            }
+        }
+    }
+
+    private void writeNow(List<JournalEntry> entries) {
+        try {
+            write(entries);
+        } catch (SQLException | IOException e) {
+            log.error("Could not write {} to the change history", entries, e);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("change-journal-writer").daemon().start(this::drain);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (!writer.join(drainTimeout)) {
+                log.error("Change history writer did not finish within {}, {} changes are not written",
+                        drainTimeout, queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<JournalEntry> late = new ArrayList<>();
+        queue.drainTo(late);
+        if (!late.isEmpty()) {
+            writeNow(late);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, which runs at {@code DEFAULT_PHASE - 2048}, so
+     * that no more changes arrive while the queue is drained.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                JournalEntry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeUntilDone(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void writeUntilDone(List<JournalEntry> batch) throws InterruptedException {
+        while (true) {
+            try {
+                write(batch);
+                return;
+            } catch (SQLException e) {
+                if (!isTransient(e)) {
+                    writeOneByOne(batch, e);
+                    return;
+                }
+                log.warn("Writing {} changes to the change history failed, retrying in {}", batch.size(), RETRY_DELAY, e);
+                Thread.sleep(RETRY_DELAY);
+            } catch (IOException e) {
+                writeOneByOne(batch, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the changes of a batch that cannot be written as a whole one at a
+     * time, so that only the ones at fault are set aside.
+     */
+    private void writeOneByOne(List<JournalEntry> batch, Exception cause) throws InterruptedException {
+        if (batch.size() == 1) {
+            setAside(batch.get(0), "it cannot be written", cause);
+            return;
+        }
+        for (JournalEntry entry : batch) {
+            writeUntilDone(List.of(entry));
+        }
+    }
+
+    private void setAside(JournalEntry entry, String reason, Exception cause) {
+        deadLetter.increment();
+        log.error("Change left out of the change history because {}: {}", reason, entry, cause);
+    }
+
+    static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        // pgjdbc raises some client-side errors without a SQLState; retrying those would stall the writer
+        String state = e.getSQLState();
+        return state != null && state.length() >= 2 && TRANSIENT_SQL_STATE_CLASSES.contains(state.substring(0, 2));
+    }
+
+    private void write(List<JournalEntry> batch) throws SQLException, IOException {
+        byte[] csv = toCsv(batch);
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(ORDER_LOCK_SQL);
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new ByteArrayInputStream(csv));
+                connection.commit();
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private byte[] toCsv(List<JournalEntry> batch) throws JsonProcessingException {
+        StringBuilder csv = new StringBuilder(batch.size() * 512);
+        for (JournalEntry entry : batch) {
+            AccountChange change = entry.change();
+            csv.append(change.entity()).append(',')
+                    .append(change.entityId()).append(',')
+                    .append(change.operation()).append(',');
+            appendJson(csv, change.before()).append(',');
+            appendJson(csv, change.after()).append(',')
+                    .append(entry.changedAt()).append(',');
+            appendQuoted(csv, entry.changedBy()).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private StringBuilder appendJson(StringBuilder csv, Map<String, Object> values) throws JsonProcessingException {
+        return appendQuoted(csv, values == null ? null : objectMapper.writeValueAsString(values));
+    }
+
+    /**
+     * An unquoted empty field is NULL in CSV, so null is written as nothing.
+     */
+    private static StringBuilder appendQuoted(StringBuilder csv, String value) {
+        return value == null ? csv : csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private record JournalEntry(AccountChange change, LocalDateTime changedAt, String changedBy) {
+    }
+
+}
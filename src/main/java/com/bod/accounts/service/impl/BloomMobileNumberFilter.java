@@ -0,0 +1,261 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.lookup.BloomFilter;
+import com.bod.accounts.repository.CustomerRepository;
+import com.bod.accounts.service.IMobileNumberFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every registered mobile number, built from {@code customer}
+ * once the application is ready and kept current by the service writes, and by
+ * {@code CustomerRegistrationListener} for numbers registered on other
+ * instances. Until the first build completes every number is reported as
+ * possibly registered.
+ * <p>
+ * A Bloom filter cannot forget a key, so deleted and changed numbers are only
+ * counted as stale. The filter is rebuilt in the background when stale keys
+ * exceed {@code accounts.mobile-filter.rebuild-stale-ratio} of its keys, when
+ * it holds more keys than it was sized for, or on request through the
+ * {@code mobilefilter} actuator endpoint. While a rebuild scans the table, new
+ * numbers go into both filters. Numbers registered in the last minute are added
+ * again before the new filter is swapped in. That covers a customer whose insert
+ * commits after the scan began, even though it was registered before.
+ * <p>
+ * Recent numbers are kept in a ring of {@code accounts.mobile-filter.recent-capacity}
+ * slots, so a bulk import notifying millions of numbers a minute does not grow
+ * the heap. When the ring has overwritten numbers from the last minute before a
+ * scan, the new filter may miss some of them; it is dropped, the current one is
+ * kept, and the rebuild is tried again a minute later.
+ */
+@Slf4j
+@Component
+public class BloomMobileNumberFilter implements IMobileNumberFilter {
+
+    private static final Duration RECENT_WINDOW = Duration.ofMinutes(1);
+
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long minExpectedInsertions;
+    private final double rebuildStaleRatio;
+    private final int recentMask;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+    /**
+     * Ring of the recently registered numbers and when they were registered;
+     * {@code recentCount} is the number of registrations ever, so slot
+     * {@code recentCount & recentMask} is the next one overwritten.
+     */
+    private final AtomicLongArray recentKeys;
+    private final AtomicLongArray recentRegisteredAt;
+    private final AtomicLong recentCount = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong staleKeys = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong absentLookups = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile Instant lastRebuildAt;
+    private volatile Duration lastRebuildTook;
+
+    public BloomMobileNumberFilter(CustomerRepository customerRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${accounts.mobile-filter.enabled:true}") boolean enabled,
+                                   @Value("${accounts.mobile-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                   @Value("${accounts.mobile-filter.min-expected-insertions:1000000}") long minExpectedInsertions,
+                                   @Value("${accounts.mobile-filter.rebuild-stale-ratio:0.2}") double rebuildStaleRatio,
+                                   @Value("${accounts.mobile-filter.recent-capacity:65536}") int recentCapacity) {
+        this.customerRepository = customerRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minExpectedInsertions = minExpectedInsertions;
+        this.rebuildStaleRatio = rebuildStaleRatio;
+        int capacity = Integer.highestOneBit(Math.max(1, recentCapacity - 1)) << 1;
+        this.recentMask = capacity - 1;
+        this.recentKeys = new AtomicLongArray(capacity);
+        this.recentRegisteredAt = new AtomicLongArray(capacity);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuildInBackground();
+        }
+    }
+
+    @Override
+    public boolean isDefinitelyAbsent(String mobileNumber) {
+        BloomFilter filter = current;
+        long key = key(mobileNumber);
+        if (filter == null || key < 0) {
+            return false;
+        }
+        lookups.incrementAndGet();
+        if (filter.mightContain(key)) {
+            return false;
+        }
+        absentLookups.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public void registered(String mobileNumber) {
+        long key = key(mobileNumber);
+        if (!enabled || key < 0) {
+            return;
+        }
+        int slot = (int) (recentCount.getAndIncrement() & recentMask);
+        recentKeys.set(slot, key);
+        recentRegisteredAt.set(slot, System.nanoTime());
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(key);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(key);
+        }
+        if (filter != null && filter.insertions() > filter.expectedInsertions()) {
+            rebuildInBackground();
+        }
+    }
+
+    @Override
+    public void deregistered(String mobileNumber) {
+        BloomFilter filter = current;
+        if (filter != null && key(mobileNumber) >= 0
+                && staleKeys.incrementAndGet() > filter.insertions() * rebuildStaleRatio) {
+            rebuildInBackground();
+        }
+    }
+
+    /**
+     * @return false if a rebuild is already running or the filter is disabled
+     */
+    public boolean rebuildInBackground() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofPlatform().name("mobile-filter-rebuild").daemon().start(() -> {
+            try {
+                while (!rebuild()) {
+                    log.warn("Over {} numbers registered within {} of the mobile number filter rebuild, "
+                            + "keeping the current filter and retrying", recentMask + 1, RECENT_WINDOW);
+                    Thread.sleep(RECENT_WINDOW);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Rebuild of the mobile number filter failed, keeping the current one", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                building = null;
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return false if the ring lost numbers that may be missing from the scan, and the filter was not swapped
+     */
+    private boolean rebuild() {
+        long start = System.nanoTime();
+        long customers = customerRepository.count();
+        BloomFilter next = new BloomFilter(Math.max(minExpectedInsertions, customers * 2), falsePositiveRate);
+        long staleBefore = staleKeys.get();
+        building = next;
+        // numbers registered from now on go into the new filter; the ones before are in the ring
+        int held = (int) Math.min(recentCount.get(), recentMask + 1L);
+        for (int slot = 0; slot < held; slot++) {
+            next.put(recentKeys.get(slot));
+        }
+        long registrations = recentCount.get();
+        if (registrations > recentMask + 1L
+                && recentRegisteredAt.get((int) (registrations & recentMask)) - (start - RECENT_WINDOW.toNanos()) > 0) {
+            // the oldest number the ring holds is from the last minute, so it overwrote some that may be needed
+            building = null;
+            return false;
+        }
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<String> mobileNumbers = customerRepository.streamAllMobileNumbers()) {
+                mobileNumbers.forEach(mobileNumber -> {
+                    long key = key(mobileNumber);
+                    if (key >= 0) {
+                        next.put(key);
+                    }
+                });
+            }
+        });
+        current = next;
+        staleKeys.addAndGet(-staleBefore);
+        rebuilds.incrementAndGet();
+        lastRebuildAt = Instant.now();
+        lastRebuildTook = Duration.ofNanos(System.nanoTime() - start);
+        log.info("Mobile number filter rebuilt from {} customers in {}", customers, lastRebuildTook);
+        return true;
+    }
+
+    /**
+     * @return sizing, fill and usage of the filter, for the actuator endpoint
+     */
+    public Map<String, Object> stats() {
+        BloomFilter filter = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", filter != null);
+        stats.put("rebuilding", rebuilding.get());
+        if (filter != null) {
+            stats.put("bits", filter.bitSize());
+            stats.put("sizeBytes", filter.bitSize() / 8);
+            stats.put("hashFunctions", filter.hashFunctions());
+            stats.put("expectedInsertions", filter.expectedInsertions());
+            stats.put("insertions", filter.insertions());
+            stats.put("staleKeys", staleKeys.get());
+            stats.put("targetFalsePositiveRate", filter.falsePositiveRate());
+            stats.put("expectedFalsePositiveRate", filter.expectedFalsePositiveRate());
+        }
+        stats.put("lookups", lookups.get());
+        stats.put("definitelyAbsent", absentLookups.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("lastRebuildAt", lastRebuildAt);
+        stats.put("lastRebuildTook", lastRebuildTook);
+        return stats;
+    }
+
+    /**
+     * @return the mobile number as a key, or -1 if it is not 10 digits
+     */
+    static long key(String mobileNumber) {
+        if (mobileNumber == null || mobileNumber.length() != 10) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < 10; i++) {
+            char digit = mobileNumber.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            key = key * 10 + (digit - '0');
+        }
+        return key;
+    }
+
+}
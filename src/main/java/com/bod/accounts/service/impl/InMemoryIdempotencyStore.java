@@ -0,0 +1,143 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.exception.IdempotencyKeyInUseException;
+import com.bod.accounts.exception.IdempotencyKeyMismatchException;
+import com.bod.accounts.idempotency.IdempotentResponse;
+import com.bod.accounts.service.IIdempotencyStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency keys of this instance. Responses are held in a Caffeine cache
+ * for {@code accounts.idempotency.ttl} after they were stored, bounded by the
+ * size of their bodies, {@code accounts.idempotency.max-size} in all, with the
+ * least used evicted first. A retry that lands on another instance is not
+ * recognised; use {@code accounts.idempotency.store=jdbc} when there is more
+ * than one.
+ * <p>
+ * Keys of requests still running are kept apart, so they are never evicted.
+ * Requests with such a key wait on its result rather than polling, for up to
+ * {@code accounts.idempotency.wait-timeout}.
+ * <p>
+ * Publishes the {@code accounts.idempotency.keys} gauge.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IIdempotencyStore {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<String, Stored> responses;
+    private final Map<String, Claim> running = new ConcurrentHashMap<>();
+    private final long waitTimeoutNanos;
+
+    public InMemoryIdempotencyStore(MeterRegistry meterRegistry,
+                                    @Value("${accounts.idempotency.ttl:24h}") Duration ttl,
+                                    @Value("${accounts.idempotency.max-size:64MB}") DataSize maxSize,
+                                    @Value("${accounts.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.responses = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, Stored stored) -> ENTRY_OVERHEAD_BYTES + key.length() + stored.response.body().length)
+                .build();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        Gauge.builder("accounts.idempotency.keys", responses, Cache::estimatedSize)
+                .description("Idempotency keys with a stored response held in memory").register(meterRegistry);
+    }
+
+    @Override
+    public Optional<IdempotentResponse> claim(String key, String fingerprint, UUID token) {
+        long deadline = System.nanoTime() + waitTimeoutNanos;
+        while (true) {
+            Stored stored = responses.getIfPresent(key);
+            if (stored != null) {
+                return Optional.of(stored.matching(key, fingerprint));
+            }
+            Claim claim = new Claim(token, fingerprint, new CompletableFuture<>());
+            Claim held = running.putIfAbsent(key, claim);
+            if (held == null) {
+                // the request that held the key may have stored its response in between
+                stored = responses.getIfPresent(key);
+                if (stored == null) {
+                    return Optional.empty();
+                }
+                running.remove(key, claim);
+                return Optional.of(stored.matching(key, fingerprint));
+            }
+            if (!held.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            try {
+                IdempotentResponse response = held.response.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (response != null) {
+                    return Optional.of(response);
+                }
+                // the request holding the key failed and gave it up; claim it again
+            } catch (TimeoutException e) {
+                throw new IdempotencyKeyInUseException(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInUseException(key);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public void complete(String key, UUID token, IdempotentResponse response) {
+        Claim claim = running.get(key);
+        if (claim != null && claim.token.equals(token)) {
+            responses.put(key, new Stored(claim.fingerprint, response));
+            running.remove(key, claim);
+            claim.response.complete(response);
+        }
+    }
+
+    @Override
+    public void release(String key, UUID token) {
+        Claim claim = running.get(key);
+        if (claim != null && claim.token.equals(token) && running.remove(key, claim)) {
+            claim.response.complete(null);
+        }
+    }
+
+    /**
+     * @param token - Token the request holding the key claimed it with
+     * @param fingerprint - Fingerprint of the request holding the key
+     * @param response - Completed with its response, or with null if it gave the key up
+     */
+    private record Claim(UUID token, String fingerprint, CompletableFuture<IdempotentResponse> response) {
+    }
+
+    /**
+     * @param fingerprint - Fingerprint of the request that was answered
+     * @param response - What it was answered with
+     */
+    private record Stored(String fingerprint, IdempotentResponse response) {
+
+        private IdempotentResponse matching(String key, String requestFingerprint) {
+            if (!fingerprint.equals(requestFingerprint)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            return response;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.exception.IdempotencyKeyInUseException;
+import com.bod.accounts.exception.IdempotencyKeyMismatchException;
+import com.bod.accounts.idempotency.IdempotentResponse;
+import com.bod.accounts.service.IIdempotencyStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency keys shared by every instance through the
+ * {@code idempotent_request} table. Enabled with
+ * {@code accounts.idempotency.store=jdbc}.
+ * <p>
+ * A key is claimed by inserting its row without a status. A request that finds
+ * the row still without one polls it until the status is there or
+ * {@code accounts.idempotency.wait-timeout} has passed. A claim runs out after
+ * {@code accounts.idempotency.lease}, so a key held by an instance that died
+ * mid-request can be claimed again. The row carries the token of the claim
+ * that set it, and a response or release from a request whose claim ran out
+ * and was taken over is ignored. A stored response runs out after
+ * {@code accounts.idempotency.ttl}. Rows that ran out are deleted every
+ * {@code accounts.idempotency.purge-interval}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IIdempotencyStore {
+
+    private static final String CLAIM_SQL = "INSERT INTO idempotent_request (idempotency_key, fingerprint, claim_token, expires_at) "
+            + "VALUES (?, ?, ?, now() + ? * interval '1 millisecond') "
+            + "ON CONFLICT (idempotency_key) DO UPDATE SET fingerprint = EXCLUDED.fingerprint, "
+            + "claim_token = EXCLUDED.claim_token, status_code = NULL, content_type = NULL, headers = NULL, body = NULL, "
+            + "expires_at = EXCLUDED.expires_at "
+            + "WHERE idempotent_request.expires_at < now()";
+    private static final String SELECT_SQL = "SELECT fingerprint, status_code, content_type, headers, body "
+            + "FROM idempotent_request WHERE idempotency_key = ?";
+    private static final String COMPLETE_SQL = "UPDATE idempotent_request SET status_code = ?, content_type = ?, "
+            + "headers = ?, body = ?, expires_at = now() + ? * interval '1 millisecond' "
+            + "WHERE idempotency_key = ? AND claim_token = ? AND status_code IS NULL";
+    private static final String RELEASE_SQL = "DELETE FROM idempotent_request "
+            + "WHERE idempotency_key = ? AND claim_token = ? AND status_code IS NULL";
+    private static final String PURGE_SQL = "DELETE FROM idempotent_request WHERE expires_at < now()";
+    private static final TypeReference<Map<String, List<String>>> HEADERS_TYPE = new TypeReference<>() {
+    };
+    private static final long MIN_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final long ttlMillis;
+    private final long leaseMillis;
+    private final long waitTimeoutNanos;
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("idempotency-purge").daemon().factory());
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${accounts.idempotency.ttl:24h}") Duration ttl,
+                                @Value("${accounts.idempotency.lease:1m}") Duration lease,
+                                @Value("${accounts.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                                @Value("${accounts.idempotency.purge-interval:5m}") Duration purgeInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlMillis = ttl.toMillis();
+        this.leaseMillis = lease.toMillis();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        purger.scheduleWithFixedDelay(this::purge, purgeInterval.toMillis(), purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<IdempotentResponse> claim(String key, String fingerprint, UUID claim) {
+        long deadline = System.nanoTime() + waitTimeoutNanos;
+        long pollMillis = MIN_POLL_MILLIS;
+        while (true) {
+            if (jdbcTemplate.update(CLAIM_SQL, key, fingerprint, claim, leaseMillis) == 1) {
+                return Optional.empty();
+            }
+            List<Row> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Row(rs.getString(1),
+                    (Integer) rs.getObject(2), rs.getString(3), rs.getString(4), rs.getBytes(5)), key);
+            if (rows.isEmpty()) {
+                // given up by the request that held it; claim it again
+                continue;
+            }
+            Row row = rows.getFirst();
+            if (!row.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            if (row.status != null) {
+                return Optional.of(new IdempotentResponse(row.status, row.contentType, readHeaders(row.headers), row.body));
+            }
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pollMillis) > deadline) {
+                throw new IdempotencyKeyInUseException(key);
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInUseException(key);
+            }
+            pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    @Override
+    public void complete(String key, UUID claim, IdempotentResponse response) {
+        String headers;
+        try {
+            headers = objectMapper.writeValueAsString(response.headers());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        jdbcTemplate.update(COMPLETE_SQL, response.status(), response.contentType(), headers, response.body(), ttlMillis, key, claim);
+    }
+
+    @Override
+    public void release(String key, UUID claim) {
+        jdbcTemplate.update(RELEASE_SQL, key, claim);
+    }
+
+    private void purge() {
+        try {
+            int purged = jdbcTemplate.update(PURGE_SQL);
+            log.debug("Purged {} idempotency keys", purged);
+        } catch (DataAccessException e) {
+            log.warn("Purging idempotency keys failed", e);
+        }
+    }
+
+    private Map<String, List<String>> readHeaders(String headers) {
+        try {
+            return headers == null ? Map.of() : objectMapper.readValue(headers, HEADERS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        purger.shutdownNow();
+    }
+
+    private record Row(String fingerprint, Integer status, String contentType, String headers, byte[] body) {
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.lookup.OffHeapLongIndex;
+import com.bod.accounts.projection.CustomerAccountIds;
+import com.bod.accounts.repository.CustomerRepository;
+import com.bod.accounts.service.IMobileNumberIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Mobile number to customer id and account number, held off-heap in an
+ * {@link OffHeapLongIndex} keyed by the 10 digit mobile number as a {@code long}.
+ * Enabled with {@code accounts.mobile-index.enabled=true}.
+ * <p>
+ * Loaded by a streaming scan once the application is ready, and kept current by
+ * this instance's writes. Writes on other instances are not seen, so a hit can
+ * be stale and a miss proves nothing. Callers check a hit against the row they
+ * read and fall back to the mobile number lookup when either fails. Nothing is
+ * served from the index until the scan has completed.
+ * <p>
+ * Publishes the {@code accounts.mobile.index.entries} and
+ * {@code accounts.mobile.index.off.heap} gauges and the
+ * {@code accounts.mobile.index.lookups} counter, tagged by result.
+ */
+@Slf4j
+@Component
+public class OffHeapMobileNumberIndex implements IMobileNumberIndex {
+
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+    private volatile OffHeapLongIndex index;
+    private volatile boolean loaded;
+
+    public OffHeapMobileNumberIndex(CustomerRepository customerRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${accounts.mobile-index.enabled:false}") boolean enabled) {
+        this.customerRepository = customerRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.hits = Counter.builder("accounts.mobile.index.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("accounts.mobile.index.lookups").tag("result", "miss").register(meterRegistry);
+        if (enabled) {
+            Gauge.builder("accounts.mobile.index.entries", this, self -> self.index == null ? 0 : self.index.size())
+                    .register(meterRegistry);
+            Gauge.builder("accounts.mobile.index.off.heap", this, self -> self.index == null ? 0 : self.index.offHeapBytes())
+                    .baseUnit("bytes").register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            Thread.ofPlatform().name("mobile-index-load").daemon().start(this::load);
+        }
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        OffHeapLongIndex loading = new OffHeapLongIndex(customerRepository.count());
+        index = loading;
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<CustomerAccountIds> rows = customerRepository.streamAllCustomerAccountIds()) {
+                    rows.forEach(this::put);
+                }
+            });
+            loaded = true;
+            log.info("Mobile number index loaded with {} entries, {} MB off-heap, in {}", loading.size(),
+                    loading.offHeapBytes() >> 20, Duration.ofNanos(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.warn("Loading the mobile number index failed, lookups go to the database", e);
+        }
+    }
+
+    @Override
+    public Optional<CustomerAccountIds> find(String mobileNumber) {
+        long key = BloomMobileNumberFilter.key(mobileNumber);
+        if (!loaded || key < 0) {
+            return Optional.empty();
+        }
+        OffHeapLongIndex.Entry entry = index.get(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(new CustomerAccountIds(mobileNumber, entry.first(), entry.second()));
+    }
+
+    @Override
+    public void put(CustomerAccountIds ids) {
+        OffHeapLongIndex current = index;
+        long key = BloomMobileNumberFilter.key(ids.mobileNumber());
+        if (current != null && key >= 0 && ids.customerId() != null && ids.accountNumber() != null) {
+            current.put(key, ids.customerId(), ids.accountNumber());
+        }
+    }
+
+    @Override
+    public void remove(String mobileNumber) {
+        OffHeapLongIndex current = index;
+        long key = BloomMobileNumberFilter.key(mobileNumber);
+        if (current != null && key >= 0) {
+            current.remove(key);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.datasource.ReadReplicaDataSource;
+import com.bod.accounts.service.IReadYourWrites;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps reads of a mobile number on the primary from its write until
+ * {@code accounts.read-replicas.read-your-writes-window} after the commit, long
+ * enough for the replicas to replay it. Only the numbers written are held to
+ * the primary, so a steady stream of writes does not take the other reads off
+ * the replicas; and a fetch right after an update does not put the replica's
+ * older copy into the accounts cache.
+ * <p>
+ * Does nothing when no replicas are configured. Writes on other instances are
+ * not seen, so a client that writes through one instance and reads through
+ * another may read from a replica that has not caught up.
+ */
+@Component
+public class ReadYourWritesWindow implements IReadYourWrites {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final Map<String, Long> writtenAt = new ConcurrentHashMap<>();
+    private volatile int nextPurgeAt = PURGE_THRESHOLD;
+
+    public ReadYourWritesWindow(@Value("${accounts.read-replicas.urls:}") String replicaUrls,
+                                @Value("${accounts.read-replicas.read-your-writes-window:2s}") Duration window) {
+        this.enabled = !replicaUrls.isBlank();
+        this.windowNanos = window.toNanos();
+    }
+
+    @Override
+    public void written(String mobileNumber) {
+        if (!enabled || mobileNumber == null) {
+            return;
+        }
+        stamp(mobileNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stamp(mobileNumber);
+                }
+            });
+        }
+    }
+
+    private void stamp(String mobileNumber) {
+        long now = System.nanoTime();
+        writtenAt.put(mobileNumber, now);
+        if (writtenAt.size() > nextPurgeAt) {
+            writtenAt.values().removeIf(at -> now - at > windowNanos);
+            nextPurgeAt = Math.max(PURGE_THRESHOLD, writtenAt.size() * 2);
+        }
+    }
+
+    @Override
+    public <T> T read(Collection<String> mobileNumbers, Supplier<T> read) {
+        if (enabled && mobileNumbers.stream().anyMatch(this::recentlyWritten)) {
+            return ReadReplicaDataSource.onPrimary(read);
+        }
+        return read.get();
+    }
+
+    private boolean recentlyWritten(String mobileNumber) {
+        Long at = writtenAt.get(mobileNumber);
+        return at != null && System.nanoTime() - at <= windowNanos;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.service.IAccountNumberGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out account numbers from blocks of serials reserved on the
+ * {@code account_number_seq} sequence. One {@code nextval} reserves as many
+ * serials as the sequence increments by, so instances never overlap and only
+ * go to the database once per block. Within a block numbers are taken with a
+ * single atomic increment.
+ * <p>
+ * An account number is the 9 digit serial followed by a Luhn check digit, or
+ * by 0 when check digits are disabled.
+ */
+@Component
+public class SequenceAccountNumberGenerator implements IAccountNumberGenerator {
+
+    private static final String RESERVE_BLOCK_SQL = "SELECT nextval('account_number_seq'), increment_by "
+            + "FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = 'account_number_seq'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean checkDigit;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(0, 0));
+    private final ReentrantLock refillLock = new ReentrantLock();
+
+    public SequenceAccountNumberGenerator(JdbcTemplate jdbcTemplate,
+                                          @Value("${accounts.account-number.check-digit:true}") boolean checkDigit) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkDigit = checkDigit;
+    }
+
+    /**
+     * @return a new 10 digit account number
+     */
+    @Override
+    public long nextAccountNumber() {
+        while (true) {
+            Block current = block.get();
+            long serial = current.next.getAndIncrement();
+            if (serial < current.end) {
+                return serial * 10 + (checkDigit ? luhnCheckDigit(serial) : 0);
+            }
+            refill(current);
+        }
+    }
+
+    /**
+     * Reserves a new block unless another thread already replaced the exhausted one.
+     *
+     * @param exhausted - Block the caller ran out of
+     */
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            if (block.get() == exhausted) {
+                block.set(jdbcTemplate.queryForObject(RESERVE_BLOCK_SQL, (rs, rowNum) -> {
+                    long start = rs.getLong(1);
+                    return new Block(start, start + rs.getLong(2));
+                }));
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * @param number - Digits to protect
+     * @return the digit that makes the number followed by it pass the Luhn check
+     */
+    static int luhnCheckDigit(long number) {
+        int sum = 0;
+        boolean doubled = true;
+        for (long rest = number; rest > 0; rest /= 10) {
+            int digit = (int) (rest % 10);
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+}
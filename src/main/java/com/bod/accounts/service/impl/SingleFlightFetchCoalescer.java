@@ -0,0 +1,135 @@
+package com.bod.accounts.service.impl;
+
+import com.bod.accounts.service.IFetchCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single flight per key: the first caller runs the load on its own thread,
+ * and callers for the same key that arrive while it runs wait for it and get
+ * its result, or the exception it threw, instead of running the same query
+ * again. The load is forgotten as soon as it finishes, so a later call runs a
+ * fresh one; nothing is cached here. A hot customer missing from the accounts
+ * cache, just after an update evicted it, costs one query rather than one per
+ * request waiting on it.
+ * <p>
+ * A write to the key detaches the running load, so a caller that has just
+ * written does not get a result read before its write. Turned off with
+ * {@code accounts.fetch-coalescing.enabled}.
+ * <p>
+ * Publishes {@code accounts.fetch.coalescing.calls} by role (leader ran the
+ * load, follower waited for one), the {@code accounts.fetch.coalescing.ratio}
+ * gauge of followers to calls, and {@code accounts.fetch.coalescing.wait},
+ * how long followers waited.
+ */
+@Component
+public class SingleFlightFetchCoalescer implements IFetchCoalescer {
+
+    private final boolean enabled;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final Timer followerWait;
+
+    public SingleFlightFetchCoalescer(MeterRegistry meterRegistry,
+                                      @Value("${accounts.fetch-coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.leaders = calls(meterRegistry, "leader");
+        this.followers = calls(meterRegistry, "follower");
+        this.followerWait = Timer.builder("accounts.fetch.coalescing.wait")
+                .description("Time callers waited for a load run by another caller")
+                .register(meterRegistry);
+        Gauge.builder("accounts.fetch.coalescing.ratio", this, SingleFlightFetchCoalescer::ratio)
+                .description("Share of calls answered by a load another caller ran")
+                .register(meterRegistry);
+        Gauge.builder("accounts.fetch.coalescing.in.flight", inFlight, Map::size)
+                .description("Loads running that later callers can join")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T load(String key, Supplier<T> load) {
+        if (!enabled) {
+            return load.get();
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return follow(running);
+        }
+        leaders.increment();
+        T value;
+        try {
+            value = load.get();
+        } catch (Throwable e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, flight);
+        flight.complete(value);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T follow(CompletableFuture<Object> running) {
+        followers.increment();
+        long start = System.nanoTime();
+        try {
+            return (T) running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            followerWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void written(String key) {
+        if (!enabled || key == null) {
+            return;
+        }
+        inFlight.remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    inFlight.remove(key);
+                }
+            });
+        }
+    }
+
+    private double ratio() {
+        double followed = followers.count();
+        double total = followed + leaders.count();
+        return total == 0 ? 0 : followed / total;
+    }
+
+    private static Counter calls(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("accounts.fetch.coalescing.calls")
+                .description("Fetches by whether they ran the load or waited for another caller's")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+}
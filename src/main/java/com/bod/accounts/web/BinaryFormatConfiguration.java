@@ -0,0 +1,33 @@
+package com.bod.accounts.web;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile})
+ * bodies next to JSON, for services that would rather not encode and parse
+ * text. Clients pick one with {@code Accept} and {@code Content-Type}.
+ * <p>
+ * Spring MVC registers both converters by itself once the dataformats are on
+ * the classpath, but with a mapper of its own. These are built from Spring
+ * Boot's builder instead, so the {@code spring.jackson} settings hold for every
+ * format and dates are written as in JSON. Spring Boot puts them in the place of
+ * the default ones.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.cbor().build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.smile().build());
+    }
+
+}
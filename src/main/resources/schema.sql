@@ -1,5 +1,5 @@
 CREATE TABLE IF NOT EXISTS customer (
-  customer_id SERIAL PRIMARY KEY,
+  customer_id BIGSERIAL PRIMARY KEY,
   name varchar(100) NOT NULL,
   email varchar(100) NOT NULL,
   mobile_number varchar(20) NOT NULL,
@@ -10,8 +10,8 @@ CREATE TABLE IF NOT EXISTS customer (
 );
 
 CREATE TABLE IF NOT EXISTS accounts (
-  customer_id int NOT NULL,
-  account_number SERIAL PRIMARY KEY,
+  customer_id bigint NOT NULL,
+  account_number BIGSERIAL PRIMARY KEY,
   account_type varchar(100) NOT NULL,
   branch_address varchar(200) NOT NULL,
   created_at date NOT NULL,
@@ -19,3 +19,92 @@ CREATE TABLE IF NOT EXISTS accounts (
   updated_at date DEFAULT NULL,
   updated_by varchar(20) DEFAULT NULL
 );
+
+
+-- Account numbers are a 9 digit serial followed by a check digit, past the
+-- int range the tables were first created with; the customer ids are widened
+-- along with them.
+DO '
+BEGIN
+  IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema()
+      AND table_name = ''accounts'' AND column_name = ''account_number'' AND data_type = ''integer'') THEN
+    ALTER TABLE accounts ALTER COLUMN account_number TYPE bigint, ALTER COLUMN customer_id TYPE bigint;
+    ALTER TABLE customer ALTER COLUMN customer_id TYPE bigint;
+    ALTER SEQUENCE accounts_account_number_seq AS bigint;
+    ALTER SEQUENCE customer_customer_id_seq AS bigint;
+  END IF;
+END';
+
+-- Customer ids come from the column default, one sequence value per customer.
+-- Restores the increment on databases where it was raised for block allocation.
+ALTER SEQUENCE customer_customer_id_seq INCREMENT BY 1;
+
+-- Account number serials, reserved by every instance in blocks of 100. Serials
+-- start above the 1000000000-1899999999 range of the random account numbers
+-- issued before, once the check digit is appended.
+CREATE SEQUENCE IF NOT EXISTS account_number_seq START WITH 190000000 INCREMENT BY 100 MAXVALUE 999999999;
+
+-- A mobile number identifies one customer. Account creation inserts with
+-- ON CONFLICT on this index instead of looking the number up first.
+CREATE UNIQUE INDEX IF NOT EXISTS customer_mobile_number_uk ON customer (mobile_number);
+
+CREATE INDEX IF NOT EXISTS accounts_customer_id_idx ON accounts (customer_id);
+
+-- Account listings seek past the last account number of the previous page, so
+-- every page is one index range scan however deep it is.
+CREATE INDEX IF NOT EXISTS accounts_branch_type_number_idx ON accounts (branch_address, account_type, account_number);
+CREATE INDEX IF NOT EXISTS accounts_branch_number_idx ON accounts (branch_address, account_number);
+
+-- Every instance keeps an in-memory filter of registered mobile numbers and
+-- LISTENs on this channel to learn about numbers registered by the others.
+CREATE OR REPLACE FUNCTION notify_customer_registered() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+  PERFORM pg_notify(''customer_registered'', NEW.mobile_number);
+  RETURN NEW;
+END';
+
+DO '
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = ''customer_registered_notify'') THEN
+    CREATE TRIGGER customer_registered_notify AFTER INSERT OR UPDATE OF mobile_number ON customer
+      FOR EACH ROW EXECUTE FUNCTION notify_customer_registered();
+  END IF;
+END';
+
+-- Append-only history of customer and account changes, written in batches by
+-- the change journal after the change has committed.
+CREATE TABLE IF NOT EXISTS account_change_history (
+  change_id bigserial PRIMARY KEY,
+  entity varchar(20) NOT NULL,
+  entity_id bigint NOT NULL,
+  operation varchar(10) NOT NULL,
+  before_values jsonb DEFAULT NULL,
+  after_values jsonb DEFAULT NULL,
+  changed_at timestamp NOT NULL,
+  changed_by varchar(20) DEFAULT NULL
+);
+
+CREATE INDEX IF NOT EXISTS account_change_history_entity_idx ON account_change_history (entity, entity_id, change_id);
+
+-- Optimistic locking: every update of a customer or account bumps its version
+-- and only applies to the version it was read at.
+ALTER TABLE customer ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+
+-- Responses to requests sent with an Idempotency-Key, when the keys are shared
+-- between instances (accounts.idempotency.store=jdbc). A row without a status
+-- is a key claimed by a request that is still running.
+CREATE TABLE IF NOT EXISTS idempotent_request (
+  idempotency_key varchar(255) PRIMARY KEY,
+  fingerprint varchar(64) NOT NULL,
+  claim_token uuid DEFAULT NULL,
+  status_code int DEFAULT NULL,
+  content_type varchar(100) DEFAULT NULL,
+  headers text DEFAULT NULL,
+  body bytea DEFAULT NULL,
+  expires_at timestamptz NOT NULL
+);
+
+ALTER TABLE idempotent_request ADD COLUMN IF NOT EXISTS claim_token uuid DEFAULT NULL;
+
+CREATE INDEX IF NOT EXISTS idempotent_request_expires_at_idx ON idempotent_request (expires_at);
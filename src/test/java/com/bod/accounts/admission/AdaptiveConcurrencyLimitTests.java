@@ -0,0 +1,69 @@
+package com.bod.accounts.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimitTests {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void tryAcquire_should_refuse_past_the_limit_and_the_share() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, THRESHOLD, 0.5);
+        // When
+        int reads = 0;
+        while (limit.tryAcquire(0.8)) {
+            reads++;
+        }
+        int writes = 0;
+        while (limit.tryAcquire(1)) {
+            writes++;
+        }
+        // Then
+        assertEquals(8, reads);
+        assertEquals(2, writes);
+        assertEquals(10, limit.inFlight());
+    }
+
+    @Test
+    void release_should_back_off_on_slow_requests_and_grow_on_fast_ones_while_busy() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100, THRESHOLD, 0.5);
+        // When
+        assertTrue(limit.tryAcquire(1));
+        limit.release(THRESHOLD * 2, false);
+        double afterSlow = limit.limit();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire(1));
+        }
+        for (int i = 0; i < 5; i++) {
+            limit.release(THRESHOLD / 10, false);
+        }
+        double afterBusy = limit.limit();
+        assertTrue(limit.tryAcquire(1));
+        limit.release(THRESHOLD / 10, false);
+        // Then
+        assertEquals(5, afterSlow);
+        assertTrue(afterBusy > 5.5 && afterBusy < 6, "limit: " + afterBusy);
+        assertEquals(afterBusy, limit.limit());
+        assertEquals(0, limit.inFlight());
+    }
+
+    @Test
+    void release_should_not_go_below_the_minimum() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 3, 100, 0, 0.5);
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire(1));
+            limit.release(1, true);
+        }
+        // Then
+        assertEquals(3, limit.limit());
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.bod.accounts.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTests {
+
+    @Test
+    void tryTake_should_allow_a_burst_and_then_the_rate() {
+        // Given
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+        // When
+        int taken = 0;
+        while (bucket.tryTake(now) == 0) {
+            taken++;
+        }
+        long wait = bucket.tryTake(now);
+        // Then
+        assertEquals(5, taken);
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(100), "wait: " + wait);
+        assertEquals(0, bucket.tryTake(now + TimeUnit.MILLISECONDS.toNanos(100)));
+        assertTrue(bucket.tryTake(now + TimeUnit.MILLISECONDS.toNanos(100)) > 0);
+    }
+
+    @Test
+    void tryTake_should_refill_to_the_burst_only() {
+        // Given
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long later = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        // When
+        int taken = 0;
+        while (bucket.tryTake(later) == 0) {
+            taken++;
+        }
+        // Then
+        assertEquals(5, taken);
+    }
+
+}
@@ -2,17 +2,41 @@ package com.bod.accounts.controller;
 
 import com.bod.accounts.constants.AccountsConstants;
 import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.AccountsPageDto;
+import com.bod.accounts.dto.BatchFetchResponseDto;
+import com.bod.accounts.dto.BatchResponseDto;
 import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.dto.CustomerPatchDto;
 import com.bod.accounts.exception.CustomerAlreadyExistsException;
+import com.bod.accounts.exception.ResourceNotFoundException;
+import com.bod.accounts.exception.VersionConflictException;
+import com.bod.accounts.feed.SseChangeFeed;
+import com.bod.accounts.journal.AccountChange;
 import com.bod.accounts.service.IAccountsService;
+import com.bod.accounts.service.IChangeJournal;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -27,6 +51,15 @@ public class AccountsControllerTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private SseChangeFeed changeFeed;
+
+    @Autowired
+    private IChangeJournal changeJournal;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private CustomerDto customerDto;
 
     @BeforeEach
@@ -67,6 +100,23 @@ public class AccountsControllerTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testCreateAccounts_success() throws Exception {
+        //given part
+        when(iAccountsService.createAccounts(anyList())).thenReturn(List.of(
+                new BatchResponseDto("9278091701", AccountsConstants.STATUS_201, AccountsConstants.MESSAGE_201),
+                new BatchResponseDto("9278091702", AccountsConstants.STATUS_400, "Customer already registered with given mobileNumber 9278091702")));
+        //When and then part
+        mockMvc.perform(post("/api/accounts/create/batch")
+                        .contentType("application/json")
+                        .content("[{\"name\":\"Hemant\",\"email\":\"hemantraghav@gmail.com\",\"mobileNumber\":\"9278091701\"},"
+                                + "{\"name\":\"Hemant\",\"email\":\"hemantraghav@gmail.com\",\"mobileNumber\":\"9278091702\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(content().json("[{\"mobileNumber\":\"9278091701\",\"statusCode\":\"201\"},"
+                        + "{\"mobileNumber\":\"9278091702\",\"statusCode\":\"400\"}]"));
+    }
+
     @Test
     void testFetchAccountDetails_Success() throws Exception {
 
@@ -89,6 +139,121 @@ public class AccountsControllerTests {
                         + "}"));
     }
 
+    @Test
+    void testFetchAccounts_success() throws Exception {
+        //given part
+        when(iAccountsService.fetchAccounts(List.of("9278091701", "9278091702")))
+                .thenReturn(new BatchFetchResponseDto(List.of(customerDto), List.of("9278091702")));
+        //When and then part
+        mockMvc.perform(post("/api/accounts/fetch/batch")
+                        .contentType("application/json")
+                        .content("[\"9278091701\",\"9278091702\"]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(content().json("{\"accounts\":[{\"mobileNumber\":\"9278091701\","
+                        + "\"accountsDto\":{\"accountNumber\":1191861191}}],"
+                        + "\"missingMobileNumbers\":[\"9278091702\"]}"));
+    }
+
+    @Test
+    void testListAccounts_success() throws Exception {
+        //given part
+        when(iAccountsService.listAccounts("Delhi", "Saving", "MTE5MTg2MTE5MA", 1))
+                .thenReturn(new AccountsPageDto(List.of(customerDto.getAccountsDto()), "MTE5MTg2MTE5MQ"));
+        //When and then part
+        mockMvc.perform(get("/api/accounts/list")
+                        .param("branchAddress", "Delhi")
+                        .param("accountType", "Saving")
+                        .param("pageToken", "MTE5MTg2MTE5MA")
+                        .param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"accounts\":[{\"accountNumber\":1191861191}],"
+                        + "\"nextPageToken\":\"MTE5MTg2MTE5MQ\"}"));
+    }
+
+    @Test
+    void testFetchAccountDetails_NotModified() throws Exception {
+        //given part
+        customerDto.setVersion(2L);
+        customerDto.getAccountsDto().setVersion(1L);
+        when(iAccountsService.fetchAccount("9278091701")).thenReturn(customerDto);
+        //When and then part
+        mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1191861191.1.2\""))
+                .andExpect(header().string("Vary", containsString("Accept")));
+        mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701")
+                        .header("If-None-Match", "\"1191861191.1.2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701")
+                        .header("If-None-Match", "\"1191861191.1.1\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testFetchAccountDetails_ETagNamesTheFormat() throws Exception {
+        //given part
+        customerDto.setVersion(2L);
+        customerDto.getAccountsDto().setVersion(1L);
+        when(iAccountsService.fetchAccount("9278091701")).thenReturn(customerDto);
+        //When and then part
+        mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701")
+                        .accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("ETag", "\"1191861191.1.2;cbor\""));
+        // a JSON client revalidating the tag of the CBOR body gets the JSON body
+        mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701")
+                        .accept("application/json")
+                        .header("If-None-Match", "\"1191861191.1.2;cbor\""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(header().string("ETag", "\"1191861191.1.2\""));
+        mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701")
+                        .accept("application/json;q=0.5, application/x-jackson-smile")
+                        .header("If-None-Match", "\"1191861191.1.2;smile\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testFetchAccountDetails_Cbor() throws Exception {
+        //given part
+        when(iAccountsService.fetchAccount("9278091701")).thenReturn(customerDto);
+        //When and then part
+        MvcResult result = mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091701")
+                        .accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn();
+        CustomerDto decoded = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), CustomerDto.class);
+        assertEquals("Hemant", decoded.getName());
+        assertEquals(1191861191L, decoded.getAccountsDto().getAccountNumber());
+    }
+
+    @Test
+    void testFetchAccountDetails_NotFoundAsSmile() throws Exception {
+        //given part
+        when(iAccountsService.fetchAccount("9278091702"))
+                .thenThrow(new ResourceNotFoundException("Customer", "mobileNumber", "9278091702"));
+        //When and then part
+        MvcResult result = mockMvc.perform(get("/api/accounts/fetch")
+                        .param("mobileNumber", "9278091702")
+                        .accept(AccountsConstants.APPLICATION_SMILE_VALUE))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(AccountsConstants.APPLICATION_SMILE_VALUE))
+                .andReturn();
+        JsonNode decoded = new SmileMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals("NOT_FOUND", decoded.get("errorCode").asText());
+    }
+
     @Test
     void testUpdateAccountDetails_success() throws Exception{
         when(iAccountsService.updateAccount(any())).thenReturn(true);
@@ -132,6 +297,29 @@ public class AccountsControllerTests {
                 .andExpect(content().contentType("application/json"));
     }
 
+    @Test
+    void testUpdateAccountDetails_mobileNumberTaken() throws Exception{
+        //given part
+        when(iAccountsService.updateAccount(any()))
+                .thenThrow(new CustomerAlreadyExistsException("Customer already registered with given mobileNumber 9278091702"));
+        //When and then part
+        mockMvc.perform(put("/api/accounts/update")
+                        .contentType("application/json")
+                        .content("{"
+                                + "\"name\":\"Hemant\","
+                                + "\"email\":\"hemantraghav@gmail.com\","
+                                + "\"mobileNumber\":\"9278091702\","
+                                + "\"accountsDto\":{"
+                                + "\"accountNumber\":1191861191,"
+                                + "\"accountType\":\"Current\","
+                                + "\"branchAddress\":\"Bank of Delhi, Connaught place, New Delhi\""
+                                + "}"
+                                + "}")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").value("Customer already registered with given mobileNumber 9278091702"));
+    }
+
     @Test
     void testDeleteAccountDetails_success() throws Exception{
 
@@ -155,5 +343,57 @@ public class AccountsControllerTests {
                 .andExpect(content().contentType("application/json"));
     }
 
-}
+    @Test
+    void testPatchAccountDetails_conflict() throws Exception{
+        //given part
+        when(iAccountsService.patchAccount(eq("9278091701"), any(CustomerPatchDto.class)))
+                .thenThrow(new VersionConflictException("Customer", "mobileNumber", "9278091701", 3L, 4L));
+        //When and then part
+        mockMvc.perform(patch("/api/accounts/update")
+                        .param("mobileNumber", "9278091701")
+                        .contentType("application/json")
+                        .content("{\"email\":\"hemant@bod.com\",\"version\":3}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.errorCode").value("CONFLICT"));
+    }
 
+    @Test
+    void testPatchAccountDetails_requiresVersion() throws Exception{
+        //When and then part
+        mockMvc.perform(patch("/api/accounts/update")
+                        .param("mobileNumber", "9278091701")
+                        .contentType("application/json")
+                        .content("{\"email\":\"hemant@bod.com\"}"))
+                .andExpect(status().isBadRequest());
+        verify(iAccountsService, never()).patchAccount(anyString(), any(CustomerPatchDto.class));
+    }
+
+    @Test
+    void testStreamAccountChanges_resumesAfterLastEventIdWithTheChangesOfEveryInstance() throws Exception {
+        //given part
+        long lastSeen = changeFeed.lastSequence();
+        changeJournal.record(AccountChange.ofCustomer(null, Map.of("customerId", 6L, "mobileNumber", "9278091701")));
+        // written by the change journal of another instance
+        jdbcTemplate.update("INSERT INTO account_change_history (entity, entity_id, operation, before_values, changed_at, "
+                + "changed_by) VALUES ('CUSTOMER', 6, 'DELETE', '{\"customerId\": 6}', now(), 'other')");
+        //When and then part
+        MvcResult result = mockMvc.perform(get("/api/accounts/changes").header("Last-Event-ID", lastSeen))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = "";
+        for (int i = 0; i < 100 && !(body.contains("INSERT") && body.contains("DELETE")); i++) {
+            Thread.sleep(50);
+            body = result.getResponse().getContentAsString();
+        }
+        List<Long> changeIds = jdbcTemplate.queryForList(
+                "SELECT change_id FROM account_change_history WHERE change_id > ? ORDER BY change_id", Long.class, lastSeen);
+        assertEquals(2, changeIds.size());
+        for (Long changeId : changeIds) {
+            assertTrue(body.contains("id:" + changeId + "\nevent:change\n"));
+        }
+        assertTrue(body.contains("data:{\"entity\":\"CUSTOMER\",\"entityId\":6,\"operation\":\"INSERT\""));
+        assertTrue(body.contains("\"operation\":\"DELETE\""));
+        assertTrue(body.contains("\"changedBy\":\"other\""));
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.bod.accounts.datasource;
+
+import com.bod.accounts.repository.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The local database stands in for a replica, reached with its own application name.
+ */
+@SpringBootTest(properties = {
+        "accounts.read-replicas.urls=${spring.datasource.url}&ApplicationName=accounts-replica",
+        "accounts.read-replicas.check-interval=0s",
+        // its rebuild on start-up reads from the replica too
+        "accounts.mobile-filter.enabled=false"
+})
+public class ReadReplicaConfigurationTests {
+
+    @Autowired
+    private ReadReplicaDataSource readReplicaDataSource;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void readOnly_transactions_should_go_to_the_replica() {
+        // Given
+        readReplicaDataSource.checkReplicas();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        double replicaReads = reads("replica");
+        double primaryReads = reads("primary");
+        // When
+        String readOnlyApplication = readOnly.execute(status -> applicationName());
+        String readWriteApplication = new TransactionTemplate(transactionManager).execute(status -> applicationName());
+        customerRepository.findCustomerAccountsByMobileNumber("0000000000");
+        ReadReplicaDataSource.onPrimary(() -> customerRepository.findCustomerAccountsByMobileNumber("0000000000"));
+        // Then
+        assertEquals("accounts-replica", readOnlyApplication);
+        assertNotEquals("accounts-replica", readWriteApplication);
+        assertEquals(replicaReads + 2, reads("replica"));
+        assertEquals(primaryReads + 1, reads("primary"));
+    }
+
+    private String applicationName() {
+        return jdbcTemplate.queryForObject("SELECT current_setting('application_name')", String.class);
+    }
+
+    private double reads(String target) {
+        return meterRegistry.get("accounts.datasource.reads").tag("target", target).counter().count();
+    }
+
+}
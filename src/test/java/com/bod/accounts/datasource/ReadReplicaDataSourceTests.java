@@ -0,0 +1,94 @@
+package com.bod.accounts.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ReadReplicaDataSourceTests {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+
+    @Test
+    void getConnection_should_spread_reads_over_replicas_that_keep_up() throws SQLException {
+        // Given
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replica(0.5));
+        replicas.put("replica-1", replica(1.0));
+        replicas.put("replica-2", replica(60.0));
+        replicas.put("replica-3", replica(null));
+        ReadReplicaDataSource dataSource = readReplicaDataSource(replicas);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        // When
+        Connection beforeCheck = dataSource.getConnection();
+        dataSource.checkReplicas();
+        // Then
+        assertSame(primaryConnection, beforeCheck);
+        for (int i = 0; i < 4; i++) {
+            dataSource.getConnection();
+        }
+        verify(replicas.get("replica-0"), times(1 + 2)).getConnection();
+        verify(replicas.get("replica-1"), times(1 + 2)).getConnection();
+        verify(replicas.get("replica-2"), times(1)).getConnection();
+        verify(replicas.get("replica-3"), times(1)).getConnection();
+    }
+
+    @Test
+    void getConnection_should_fall_back_to_primary() throws SQLException {
+        // Given
+        DataSource replica = replica(0.0);
+        ReadReplicaDataSource dataSource = readReplicaDataSource(Map.of("replica-0", replica));
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        dataSource.checkReplicas();
+        // When
+        Connection onPrimary = ReadReplicaDataSource.onPrimary(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        Connection replicaDown = dataSource.getConnection();
+        Connection afterDown = dataSource.getConnection();
+        // Then
+        assertSame(primaryConnection, onPrimary);
+        assertSame(primaryConnection, replicaDown);
+        assertSame(primaryConnection, afterDown);
+        verify(replica, times(1 + 1)).getConnection();
+    }
+
+    private ReadReplicaDataSource readReplicaDataSource(Map<String, DataSource> replicas) {
+        return new ReadReplicaDataSource(primary, replicas, Duration.ofSeconds(5), Duration.ZERO, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param lagSeconds - What the lag check answers, null for not known
+     */
+    private static DataSource replica(Double lagSeconds) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagSeconds == null ? 0.0 : lagSeconds);
+        when(resultSet.wasNull()).thenReturn(lagSeconds == null);
+        return dataSource;
+    }
+
+}
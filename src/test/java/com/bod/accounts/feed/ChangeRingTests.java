@@ -0,0 +1,63 @@
+package com.bod.accounts.feed;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeRingTests {
+
+    @Test
+    void after_should_return_events_after_the_cursor_in_order() {
+        // Given
+        ChangeRing ring = new ChangeRing(4, 99);
+        // When
+        ring.append(100, "a");
+        ring.append(101, "b");
+        ring.append(105, "c");
+        // Then
+        assertEquals(105, ring.lastSequence());
+        assertEquals(List.of(new ChangeRing.FeedEvent(101, "b"), new ChangeRing.FeedEvent(105, "c")), ring.after(100, 10));
+        assertEquals(List.of(new ChangeRing.FeedEvent(105, "c")), ring.after(102, 10));
+        assertEquals(List.of(new ChangeRing.FeedEvent(100, "a")), ring.after(99, 1));
+        assertTrue(ring.after(105, 10).isEmpty());
+        assertTrue(ring.after(200, 10).isEmpty());
+    }
+
+    @Test
+    void after_should_return_null_once_events_after_the_cursor_have_been_overwritten() {
+        // Given
+        ChangeRing ring = new ChangeRing(4, 99);
+        // When
+        for (int i = 0; i < 6; i++) {
+            ring.append(100 + i * 2, "event " + i);
+        }
+        // Then
+        assertNull(ring.after(98, 10));
+        assertNull(ring.after(101, 10));
+        assertEquals(4, ring.after(102, 10).size());
+        assertEquals(new ChangeRing.FeedEvent(104, "event 2"), ring.after(103, 10).get(0));
+    }
+
+    @Test
+    void after_should_return_null_before_the_first_event_appended() {
+        // Given
+        ChangeRing ring = new ChangeRing(4, 99);
+        // When
+        ring.append(100, "a");
+        // Then
+        assertNull(ring.after(50, 10));
+        assertEquals(1, ring.after(99, 10).size());
+    }
+
+    @Test
+    void append_should_reject_a_sequence_that_does_not_go_up() {
+        // Given
+        ChangeRing ring = new ChangeRing(4, 99);
+        ring.append(100, "a");
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> ring.append(100, "b"));
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.bod.accounts.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlFilterTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ErrorResponseWriter errorResponseWriter;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        errorResponseWriter = new ErrorResponseWriter(new HttpMessageConverters(false, List.of(
+                new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build()),
+                new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().build()))));
+        filter = new AdmissionControlFilter(errorResponseWriter, new ClientResolver("X-Client-Id", "127.0.0.1"),
+                meterRegistry, 1, 2, 5, 5, 5, Duration.ofSeconds(1), Duration.ofSeconds(5), 0.9, 0.6, Duration.ofSeconds(2));
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.addHeader("X-Client-Id", client);
+        return request;
+    }
+
+    @Test
+    void doFilter_should_answer_429_once_a_client_used_its_burst() throws Exception {
+        // Given
+        MockHttpServletResponse limited = new MockHttpServletResponse();
+        MockHttpServletResponse other = new MockHttpServletResponse();
+        // When
+        filter.doFilter(request("GET", "/api/accounts/fetch", "a"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("GET", "/api/accounts/fetch", "a"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("GET", "/api/accounts/fetch", "a"), limited, new MockFilterChain());
+        filter.doFilter(request("GET", "/api/accounts/fetch", "b"), other, new MockFilterChain());
+        // Then
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader("Retry-After"));
+        assertTrue(limited.getContentAsString().contains("TOO_MANY_REQUESTS"));
+        assertEquals(200, other.getStatus());
+        assertEquals(1, meterRegistry.get("accounts.admission.rejected")
+                .tag("reason", "rate-limited").tag("priority", "read").counter().count());
+    }
+
+    @Test
+    void doFilter_should_answer_in_the_format_the_client_accepts() throws Exception {
+        // Given
+        MockHttpServletResponse limited = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/api/accounts/fetch", "a"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("GET", "/api/accounts/fetch", "a"), new MockHttpServletResponse(), new MockFilterChain());
+        MockHttpServletRequest cborRequest = request("GET", "/api/accounts/fetch", "a");
+        cborRequest.addHeader("Accept", "application/cbor");
+        // When
+        filter.doFilter(cborRequest, limited, new MockFilterChain());
+        // Then
+        assertEquals(429, limited.getStatus());
+        assertEquals("application/cbor", limited.getContentType());
+        JsonNode error = Jackson2ObjectMapperBuilder.cbor().build().readTree(limited.getContentAsByteArray());
+        assertEquals("TOO_MANY_REQUESTS", error.get("errorCode").asText());
+    }
+
+    @Test
+    void doFilter_should_shed_reads_before_writes_with_503() throws Exception {
+        // Given
+        MockHttpServletResponse read = new MockHttpServletResponse();
+        MockHttpServletResponse write = new MockHttpServletResponse();
+        MockHttpServletResponse lastWrite = new MockHttpServletResponse();
+        // When: 3 of the 5 requests allowed are running, which is the reads' share
+        filter.doFilter(request("PUT", "/api/accounts/update", "c1"), new MockHttpServletResponse(),
+                (req1, res1) -> filter.doFilter(request("PUT", "/api/accounts/update", "c2"), new MockHttpServletResponse(),
+                        (req2, res2) -> filter.doFilter(request("PUT", "/api/accounts/update", "c3"), new MockHttpServletResponse(),
+                                (req3, res3) -> {
+                                    filter.doFilter(request("GET", "/api/accounts/fetch", "c4"), read, new MockFilterChain());
+                                    filter.doFilter(request("POST", "/api/accounts/create", "c5"), write,
+                                            (req5, res5) -> filter.doFilter(request("DELETE", "/api/accounts/delete", "c6"),
+                                                    new MockHttpServletResponse(),
+                                                    (req6, res6) -> filter.doFilter(request("POST", "/api/accounts/create", "c7"),
+                                                            lastWrite, new MockFilterChain())));
+                                })));
+        // Then
+        assertEquals(503, read.getStatus());
+        assertEquals("2", read.getHeader("Retry-After"));
+        assertEquals(200, write.getStatus());
+        assertEquals(503, lastWrite.getStatus());
+        assertEquals(1, meterRegistry.get("accounts.admission.rejected")
+                .tag("reason", "overloaded").tag("priority", "read").counter().count());
+        assertEquals(0, meterRegistry.get("accounts.admission.in.flight").gauge().value());
+    }
+
+    @Test
+    void doFilter_should_not_limit_requests_outside_the_api() throws Exception {
+        // Given
+        MockHttpServletResponse actuator = new MockHttpServletResponse();
+        // When
+        for (int i = 0; i < 5; i++) {
+            filter.doFilter(request("GET", "/actuator/health", "a"), new MockHttpServletResponse(), new MockFilterChain());
+        }
+        filter.doFilter(request("GET", "/actuator/health", "a"), actuator, new MockFilterChain());
+        // Then
+        assertEquals(200, actuator.getStatus());
+    }
+
+    @Test
+    void doFilter_should_name_clients_by_address_unless_sent_through_a_trusted_proxy() throws Exception {
+        // Given
+        MockHttpServletResponse limited = new MockHttpServletResponse();
+        // When
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = request("GET", "/api/accounts/fetch", "scraper-" + i);
+            request.setRemoteAddr("10.0.0.9");
+            filter.doFilter(request, i < 2 ? new MockHttpServletResponse() : limited, new MockFilterChain());
+        }
+        // Then
+        assertEquals(429, limited.getStatus());
+    }
+
+    @Test
+    void doFilter_should_measure_batches_and_idempotency_waits_against_their_own_latency() throws Exception {
+        // Given
+        SimpleMeterRegistry latencyRegistry = new SimpleMeterRegistry();
+        AdmissionControlFilter latencyFilter = new AdmissionControlFilter(errorResponseWriter,
+                new ClientResolver("X-Client-Id", ""), latencyRegistry, 0, 1, 10, 2, 100, Duration.ofMillis(20),
+                Duration.ofSeconds(5), 0.5, 1, Duration.ofSeconds(1));
+        FilterChain slow = (request, response) -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        FilterChain waitedForIdempotencyKey = (request, response) -> {
+            request.setAttribute(IdempotencyKeyFilter.WAITED_NANOS, TimeUnit.MILLISECONDS.toNanos(50));
+            slow.doFilter(request, response);
+        };
+        // When
+        latencyFilter.doFilter(request("POST", "/api/accounts/fetch/batch", "a"), new MockHttpServletResponse(), slow);
+        latencyFilter.doFilter(request("POST", "/api/accounts/create/batch", "a"), new MockHttpServletResponse(), slow);
+        latencyFilter.doFilter(request("PUT", "/api/accounts/update", "a"), new MockHttpServletResponse(),
+                waitedForIdempotencyKey);
+        double afterBatchesAndWaits = latencyRegistry.get("accounts.admission.limit").gauge().value();
+        latencyFilter.doFilter(request("GET", "/api/accounts/fetch", "a"), new MockHttpServletResponse(), slow);
+        // Then
+        assertEquals(10, afterBatchesAndWaits);
+        assertEquals(5, latencyRegistry.get("accounts.admission.limit").gauge().value());
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.bod.accounts.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ConnectionBulkheadFilterTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConnectionBulkheadFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ConnectionBulkheadFilter(mock(DataSource.class), meterRegistry,
+                new ErrorResponseWriter(new HttpMessageConverters(false, List.of(
+                        new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build())))),
+                1, Duration.ofMillis(10));
+    }
+
+    private static MockHttpServletRequest fetchRequest() {
+        return new MockHttpServletRequest("GET", "/api/accounts/fetch");
+    }
+
+    @Test
+    void doFilter_should_release_the_permit_after_the_request() throws Exception {
+        // Given
+        MockFilterChain chain = new MockFilterChain();
+        // When
+        filter.doFilter(fetchRequest(), new MockHttpServletResponse(), chain);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(fetchRequest(), second, new MockFilterChain());
+        // Then
+        assertNotNull(chain.getRequest());
+        assertEquals(200, second.getStatus());
+        assertEquals(0, meterRegistry.get("accounts.bulkhead.active").gauge().value());
+        assertEquals(2, meterRegistry.get("accounts.bulkhead.wait").tag("outcome", "acquired").timer().count());
+    }
+
+    @Test
+    void doFilter_should_reject_with_503_once_every_permit_is_held() throws Exception {
+        // Given
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        // When
+        filter.doFilter(fetchRequest(), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(fetchRequest(), rejected, new MockFilterChain()));
+        // Then
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("SERVICE_UNAVAILABLE"));
+        assertEquals(1, meterRegistry.get("accounts.bulkhead.wait").tag("outcome", "rejected").timer().count());
+    }
+
+    @Test
+    void doFilter_should_not_limit_requests_outside_the_api() throws Exception {
+        // Given
+        MockHttpServletResponse actuator = new MockHttpServletResponse();
+        // When
+        filter.doFilter(fetchRequest(), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"),
+                        actuator, new MockFilterChain()));
+        // Then
+        assertEquals(200, actuator.getStatus());
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.bod.accounts.filter;
+
+import com.bod.accounts.service.impl.InMemoryIdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyKeyFilterTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyKeyFilter filter;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new IdempotencyKeyFilter(new InMemoryIdempotencyStore(meterRegistry, Duration.ofMinutes(1),
+                DataSize.ofMegabytes(1), Duration.ofSeconds(5)), new ClientResolver("X-Client-Id", "127.0.0.1"),
+                new ErrorResponseWriter(new HttpMessageConverters(false, List.of(
+                        new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build())))),
+                meterRegistry);
+        executions = new AtomicInteger();
+    }
+
+    private static MockHttpServletRequest createRequest(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/accounts/create");
+        request.addHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private FilterChain answering(int status) {
+        return (request, response) -> {
+            executions.incrementAndGet();
+            String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setStatus(status);
+            httpResponse.setHeader("ETag", "\"1\"");
+            httpResponse.setContentType("application/json");
+            httpResponse.getWriter().write("{\"received\":" + body + "}");
+        };
+    }
+
+    @Test
+    void doFilter_should_replay_the_stored_response_for_a_retry() throws Exception {
+        // Given
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        // When
+        filter.doFilter(createRequest("key-1", "{\"a\":1}"), first, answering(201));
+        filter.doFilter(createRequest("key-1", "{\"a\":1}"), retry, answering(201));
+        // Then
+        assertEquals(1, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("{\"received\":{\"a\":1}}", retry.getContentAsString());
+        assertEquals("\"1\"", retry.getHeader("ETag"));
+        assertEquals("true", retry.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED));
+        assertNull(first.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED));
+        assertEquals(1, meterRegistry.get("accounts.idempotency.requests").tag("outcome", "replayed").counter().count());
+    }
+
+    @Test
+    void doFilter_should_reject_a_key_reused_for_another_request_with_422() throws Exception {
+        // Given
+        MockHttpServletResponse reused = new MockHttpServletResponse();
+        // When
+        filter.doFilter(createRequest("key-1", "{\"a\":1}"), new MockHttpServletResponse(), answering(201));
+        filter.doFilter(createRequest("key-1", "{\"a\":2}"), reused, answering(201));
+        // Then
+        assertEquals(1, executions.get());
+        assertEquals(422, reused.getStatus());
+        assertTrue(reused.getContentAsString().contains("key-1"));
+    }
+
+    @Test
+    void doFilter_should_keep_the_keys_of_each_client_apart() throws Exception {
+        // Given
+        MockHttpServletRequest first = createRequest("key-1", "{\"a\":1}");
+        first.addHeader("X-Client-Id", "client-a");
+        MockHttpServletRequest other = createRequest("key-1", "{\"a\":1}");
+        other.addHeader("X-Client-Id", "client-b");
+        MockHttpServletResponse otherResponse = new MockHttpServletResponse();
+        // When
+        filter.doFilter(first, new MockHttpServletResponse(), answering(201));
+        filter.doFilter(other, otherResponse, answering(201));
+        // Then
+        assertEquals(2, executions.get());
+        assertEquals(201, otherResponse.getStatus());
+        assertNull(otherResponse.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED));
+    }
+
+    @Test
+    void doFilter_should_run_a_retry_again_after_a_server_error() throws Exception {
+        // Given
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        // When
+        filter.doFilter(createRequest("key-1", "{\"a\":1}"), new MockHttpServletResponse(), answering(500));
+        filter.doFilter(createRequest("key-1", "{\"a\":1}"), retry, answering(201));
+        // Then
+        assertEquals(2, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertNull(retry.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED));
+    }
+
+    @Test
+    void doFilter_should_make_a_concurrent_duplicate_wait_for_the_running_request() throws Exception {
+        // Given
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        FilterChain slow = (request, response) -> {
+            running.countDown();
+            try {
+                finish.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            answering(201).doFilter(request, response);
+        };
+        MockHttpServletResponse duplicate = new MockHttpServletResponse();
+        // When
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(createRequest("key-1", "{\"a\":1}"), new MockHttpServletResponse(), slow);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(createRequest("key-1", "{\"a\":1}"), duplicate, answering(201));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        finish.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        // Then
+        assertEquals(1, executions.get());
+        assertEquals(201, duplicate.getStatus());
+        assertEquals("true", duplicate.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED));
+    }
+
+    @Test
+    void doFilter_should_pass_requests_without_a_key_through() throws Exception {
+        // Given
+        MockHttpServletRequest request = createRequest("key-1", "{\"a\":1}");
+        request.removeHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY);
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), answering(201));
+        filter.doFilter(request, new MockHttpServletResponse(), answering(201));
+        // Then
+        assertEquals(2, executions.get());
+    }
+
+}
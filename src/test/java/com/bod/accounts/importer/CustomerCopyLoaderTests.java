@@ -0,0 +1,95 @@
+package com.bod.accounts.importer;
+
+import com.bod.accounts.AuditingTestConfig;
+import com.bod.accounts.dto.CustomerDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(AuditingTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CustomerCopyLoaderTests {
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final String prefix = Long.toString(8_000_000_000L + System.nanoTime() % 999_000_000L).substring(0, 8);
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM accounts WHERE customer_id IN "
+                + "(SELECT customer_id FROM customer WHERE mobile_number LIKE ?)", prefix + "%");
+        jdbcTemplate.update("DELETE FROM customer WHERE mobile_number LIKE ?", prefix + "%");
+    }
+
+    private StagedCustomer staged(long lineNumber, String mobileNumber) {
+        CustomerDto customerDto = new CustomerDto();
+        customerDto.setName("Imported " + lineNumber);
+        customerDto.setEmail("imported" + lineNumber + "@bod.com");
+        customerDto.setMobileNumber(mobileNumber);
+        return new StagedCustomer(lineNumber, customerDto, Long.parseLong(mobileNumber) + 1_000_000_000L);
+    }
+
+    @Test
+    void load_should_skip_numbers_already_registered() throws Exception {
+        // Given
+        CustomerCopyLoader loader = new CustomerCopyLoader(dataSource, () -> Optional.of("test"));
+        loader.load(List.of(staged(1, prefix + "01")));
+        // When
+        List<Long> registered = loader.load(List.of(staged(2, prefix + "01"), staged(3, prefix + "02")));
+        // Then
+        assertEquals(List.of(2L), registered);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM accounts a JOIN customer c "
+                + "ON c.customer_id = a.customer_id WHERE c.mobile_number = ?", Integer.class, prefix + "02"));
+    }
+
+    @Test
+    void load_should_skip_a_number_registered_while_the_chunk_is_loading() throws Exception {
+        // Given
+        CustomerCopyLoader loader = new CustomerCopyLoader(dataSource, () -> Optional.of("test"));
+        try (Connection online = dataSource.getConnection()) {
+            online.setAutoCommit(false);
+            try (PreparedStatement statement = online.prepareStatement("INSERT INTO customer "
+                    + "(name, email, mobile_number, created_at, created_by) VALUES ('Online', 'online@bod.com', ?, now(), 'test')")) {
+                statement.setString(1, prefix + "11");
+                statement.executeUpdate();
+            }
+            // When
+            CompletableFuture<List<Long>> registered = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loader.load(List.of(staged(1, prefix + "11"), staged(2, prefix + "12")));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(registered.isDone());
+            online.commit();
+            // Then
+            assertEquals(List.of(1L), registered.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM customer WHERE mobile_number LIKE ?",
+                Integer.class, prefix + "%"));
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.bod.accounts.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CustomerImportJobTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parseCsvLine_should_unquote_fields() {
+        assertEquals(List.of("Hemant, raghav", "hemant@gmail.com", "9278091701"),
+                CustomerImportJob.parseCsvLine("\"Hemant, raghav\", hemant@gmail.com ,9278091701"));
+        assertEquals(List.of("Say \"hi\"", "", ""), CustomerImportJob.parseCsvLine("\"Say \"\"hi\"\"\",,"));
+        assertNull(CustomerImportJob.parseCsvLine("\"Hemant,hemant@gmail.com,9278091701"));
+    }
+
+    @Test
+    void mappedLineReader_should_resume_from_offset() throws Exception {
+        // Given
+        Path file = tempDir.resolve("customers.csv");
+        Files.writeString(file, "first\r\nsecond\nthird", StandardCharsets.UTF_8);
+        long offsetAfterFirst;
+        // When
+        try (MappedLineReader reader = new MappedLineReader(file, 0)) {
+            assertEquals("first", reader.nextLine());
+            offsetAfterFirst = reader.offset();
+        }
+        // Then
+        try (MappedLineReader reader = new MappedLineReader(file, offsetAfterFirst)) {
+            assertEquals("second", reader.nextLine());
+            assertEquals("third", reader.nextLine());
+            assertNull(reader.nextLine());
+            assertEquals(Files.size(file), reader.offset());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.bod.accounts.lookup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTests {
+
+    @Test
+    void mightContain_should_never_miss_a_key_that_was_put() {
+        // Given
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        // When
+        for (long key = 9_000_000_000L; key < 9_000_100_000L; key++) {
+            filter.put(key);
+        }
+        // Then
+        for (long key = 9_000_000_000L; key < 9_000_100_000L; key++) {
+            assertTrue(filter.mightContain(key));
+        }
+        assertEquals(100_000, filter.insertions());
+    }
+
+    @Test
+    void mightContain_should_stay_near_the_target_false_positive_rate() {
+        // Given
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (long key = 9_000_000_000L; key < 9_000_100_000L; key++) {
+            filter.put(key);
+        }
+        // When
+        int falsePositives = 0;
+        for (long key = 8_000_000_000L; key < 8_000_100_000L; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        // Then
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.002);
+    }
+
+}
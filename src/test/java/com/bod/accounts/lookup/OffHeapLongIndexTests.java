@@ -0,0 +1,58 @@
+package com.bod.accounts.lookup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapLongIndexTests {
+
+    @Test
+    void get_should_return_what_was_put_until_removed() {
+        // Given
+        OffHeapLongIndex index = new OffHeapLongIndex(10);
+        // When
+        index.put(9278091701L, 6L, 1191861191L);
+        index.put(9278091702L, 7L, 1191861192L);
+        index.put(9278091701L, 6L, 1191861193L);
+        index.remove(9278091702L);
+        // Then
+        assertEquals(new OffHeapLongIndex.Entry(6L, 1191861193L), index.get(9278091701L));
+        assertNull(index.get(9278091702L));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void index_should_match_a_hash_map_through_growth_and_removals() {
+        // Given
+        OffHeapLongIndex index = new OffHeapLongIndex(100);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            long key = 9_000_000_000L + random.nextInt(50_000);
+            if (random.nextInt(3) == 0) {
+                index.remove(key);
+                expected.remove(key);
+            } else {
+                index.put(key, i, key);
+                expected.put(key, (long) i);
+            }
+        }
+        // Then
+        assertEquals(expected.size(), index.size());
+        for (long key = 9_000_000_000L; key < 9_000_050_000L; key++) {
+            OffHeapLongIndex.Entry entry = index.get(key);
+            if (expected.containsKey(key)) {
+                assertEquals(new OffHeapLongIndex.Entry(expected.get(key), key), entry);
+            } else {
+                assertNull(entry);
+            }
+        }
+        assertTrue(index.offHeapBytes() >= expected.size() * 24L);
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.bod.accounts.metrics;
+
+import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.exception.ResourceNotFoundException;
+import com.bod.accounts.service.IAccountsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ServiceMetricsAspectTests {
+    @Mock
+    private IAccountsService target;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SqlStatementCounter sqlStatementCounter;
+    private IAccountsService iAccountsService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sqlStatementCounter = new SqlStatementCounter();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new ServiceMetricsAspect(meterRegistry, sqlStatementCounter));
+        iAccountsService = proxyFactory.getProxy();
+    }
+
+    @Test
+    void record_should_time_successful_calls_with_their_statement_count() {
+        // Given
+        when(target.fetchAccount("9345432123")).thenAnswer(invocation -> {
+            sqlStatementCounter.inspect("select 1");
+            sqlStatementCounter.inspect("select 2");
+            return new CustomerDto();
+        });
+        // When
+        iAccountsService.fetchAccount("9345432123");
+        // Then
+        assertEquals(1, meterRegistry.get("accounts.service")
+                .tags("method", "fetchAccount", "outcome", "success").timer().count());
+        assertEquals(2, meterRegistry.get("accounts.service.statements")
+                .tags("method", "fetchAccount", "outcome", "success").summary().totalAmount());
+    }
+
+    @Test
+    void record_should_tag_failures_by_exception() {
+        // Given
+        when(target.deleteAccount("9345432123"))
+                .thenThrow(new ResourceNotFoundException("Customer", "mobileNumber", "9345432123"));
+        when(target.updateAccount(any())).thenThrow(new IllegalStateException("boom"));
+        // When
+        assertThrows(ResourceNotFoundException.class, () -> iAccountsService.deleteAccount("9345432123"));
+        assertThrows(IllegalStateException.class, () -> iAccountsService.updateAccount(new CustomerDto()));
+        // Then
+        assertEquals(1, meterRegistry.get("accounts.service")
+                .tags("method", "deleteAccount", "outcome", "ResourceNotFoundException").timer().count());
+        assertEquals(1, meterRegistry.get("accounts.service")
+                .tags("method", "updateAccount", "outcome", "error").timer().count());
+    }
+
+}
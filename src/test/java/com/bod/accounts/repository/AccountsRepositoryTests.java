@@ -11,7 +11,6 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 
-
 import java.util.Optional;
 @DataJpaTest
 @Import(AuditingTestConfig.class)
@@ -68,4 +67,17 @@ public class AccountsRepositoryTests  {
         // Then
         assertFalse(deletedAccount.isPresent());
     }
+
+    @Test
+    void save_should_persist_the_last_account_number_of_the_sequence() {
+        // Given: serial 999999999, the sequence's max value, with its check digit
+        account.setAccountNumber(9_999_999_999L);
+        account.setCustomerId(3_000_000_000L);
+        // When
+        accountsRepository.saveAndFlush(account);
+        // Then
+        Optional<Accounts> savedAccount = accountsRepository.findByCustomerId(3_000_000_000L);
+        assertTrue(savedAccount.isPresent());
+        assertEquals(9_999_999_999L, savedAccount.get().getAccountNumber());
+    }
 }
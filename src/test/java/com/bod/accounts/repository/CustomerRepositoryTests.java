@@ -3,6 +3,9 @@ package com.bod.accounts.repository;
 import com.bod.accounts.AuditingTestConfig;
 import com.bod.accounts.entity.Accounts;
 import com.bod.accounts.entity.Customer;
+import com.bod.accounts.projection.CustomerAccountIds;
+import com.bod.accounts.projection.CustomerAccountsView;
+import com.bod.accounts.projection.CustomerWithAccount;
 import com.bod.accounts.service.IAccountsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,7 +13,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,6 +28,8 @@ public class CustomerRepositoryTests
 {
     @Autowired
     private CustomerRepository customerRepository;
+    @Autowired
+    private AccountsRepository accountsRepository;
     private Customer customer;
     @BeforeEach
     void setUp(){
@@ -57,6 +65,131 @@ public class CustomerRepositoryTests
         assertTrue(retrievedCustomer.isPresent());
     }
     @Test
+    void findCustomerAccountsByMobileNumber_should_return_joined_view(){
+        // Given
+        Customer savedCustomerDetails = customerRepository.save(customer);
+        Accounts account = new Accounts();
+        account.setCustomerId(savedCustomerDetails.getCustomerId());
+        account.setAccountNumber(100L);
+        account.setAccountType("Saving");
+        account.setBranchAddress("Delhi");
+        accountsRepository.save(account);
+        // When
+        Optional<CustomerAccountsView> view = customerRepository.findCustomerAccountsByMobileNumber(savedCustomerDetails.getMobileNumber());
+        // Then
+        assertTrue(view.isPresent());
+        assertEquals(savedCustomerDetails.getName(), view.get().name());
+        assertEquals(100L, view.get().accountNumber());
+    }
+    @Test
+    void findCustomerAccountsByMobileNumberIn_should_return_only_registered_numbers(){
+        // Given
+        Customer savedCustomerDetails = customerRepository.save(customer);
+        Accounts account = new Accounts();
+        account.setCustomerId(savedCustomerDetails.getCustomerId());
+        account.setAccountNumber(103L);
+        account.setAccountType("Saving");
+        account.setBranchAddress("Delhi");
+        accountsRepository.save(account);
+        // When
+        List<CustomerAccountsView> views = customerRepository.findCustomerAccountsByMobileNumberIn(
+                List.of(savedCustomerDetails.getMobileNumber(), "8378387299"));
+        // Then
+        assertEquals(1, views.size());
+        assertEquals(103L, views.get(0).accountNumber());
+    }
+    @Test
+    void findPageByBranchAddressAndAccountType_should_seek_past_account_number(){
+        // Given
+        Customer savedCustomerDetails = customerRepository.save(customer);
+        for (long accountNumber = 104L; accountNumber <= 107L; accountNumber++) {
+            Accounts account = new Accounts();
+            account.setCustomerId(savedCustomerDetails.getCustomerId());
+            account.setAccountNumber(accountNumber);
+            account.setAccountType(accountNumber == 106L ? "Current" : "Saving");
+            account.setBranchAddress("Keyset branch");
+            accountsRepository.save(account);
+        }
+        // When
+        List<Accounts> page = accountsRepository.findPageByBranchAddressAndAccountType("Keyset branch", "Saving", 104L, Limit.of(2));
+        List<Accounts> branchPage = accountsRepository.findPageByBranchAddress("Keyset branch", 105L, Limit.of(5));
+        // Then
+        assertEquals(List.of(105L, 107L), page.stream().map(Accounts::getAccountNumber).toList());
+        assertEquals(List.of(106L, 107L), branchPage.stream().map(Accounts::getAccountNumber).toList());
+    }
+    @Test
+    void insertCustomerWithAccount_should_insert_once_per_mobileNumber(){
+        // Given
+        customer.setCreatedAt(LocalDateTime.now());
+        customer.setCreatedBy("test");
+        Accounts account = new Accounts();
+        account.setAccountNumber(101L);
+        account.setAccountType("Saving");
+        account.setBranchAddress("Delhi");
+        account.setCreatedAt(customer.getCreatedAt());
+        account.setCreatedBy("test");
+        // When
+        Optional<Long> customerId = customerRepository.insertCustomerWithAccount(customer, account);
+        account.setAccountNumber(102L);
+        Optional<Long> duplicate = customerRepository.insertCustomerWithAccount(customer, account);
+        // Then
+        assertTrue(customerId.isPresent());
+        assertTrue(duplicate.isEmpty());
+        assertEquals(customerId.get(), accountsRepository.findById(101L).orElseThrow().getCustomerId());
+        assertFalse(accountsRepository.findById(102L).isPresent());
+    }
+    @Test
+    void insertCustomersWithAccounts_should_skip_registered_mobileNumbers(){
+        // Given
+        customer.setCreatedAt(LocalDateTime.now());
+        customer.setCreatedBy("test");
+        Accounts account = new Accounts();
+        account.setAccountNumber(108L);
+        account.setAccountType("Saving");
+        account.setBranchAddress("Delhi");
+        account.setCreatedAt(customer.getCreatedAt());
+        account.setCreatedBy("test");
+        customerRepository.insertCustomerWithAccount(customer, account);
+        Customer newCustomer = new Customer();
+        newCustomer.setName("Hemant batch");
+        newCustomer.setEmail("hemant@gmail.com");
+        newCustomer.setMobileNumber("8378387205");
+        Accounts registeredAccount = new Accounts();
+        registeredAccount.setAccountNumber(109L);
+        registeredAccount.setAccountType("Saving");
+        registeredAccount.setBranchAddress("Delhi");
+        Accounts newAccount = new Accounts();
+        newAccount.setAccountNumber(110L);
+        newAccount.setAccountType("Saving");
+        newAccount.setBranchAddress("Delhi");
+        // When
+        List<CustomerAccountIds> inserted = customerRepository.insertCustomersWithAccounts(
+                List.of(customer, newCustomer), List.of(registeredAccount, newAccount), LocalDateTime.now(), "test");
+        // Then
+        assertEquals(1, inserted.size());
+        assertEquals("8378387205", inserted.get(0).mobileNumber());
+        assertEquals(110L, inserted.get(0).accountNumber());
+        assertEquals(inserted.get(0).customerId(), accountsRepository.findById(110L).orElseThrow().getCustomerId());
+        assertFalse(accountsRepository.findById(109L).isPresent());
+    }
+    @Test
+    void deleteByCustomerIdAndMobileNumber_should_return_the_deleted_row(){
+        // Given
+        Customer savedCustomerDetails = customerRepository.saveAndFlush(customer);
+        // When
+        Optional<Customer> wrongNumber = customerRepository.deleteByCustomerIdAndMobileNumber(
+                savedCustomerDetails.getCustomerId(), "8378387299");
+        Optional<Customer> deleted = customerRepository.deleteByCustomerIdAndMobileNumber(
+                savedCustomerDetails.getCustomerId(), savedCustomerDetails.getMobileNumber());
+        // Then
+        assertTrue(wrongNumber.isEmpty());
+        assertTrue(deleted.isPresent());
+        assertEquals("Hemant raghav", deleted.get().getName());
+        assertEquals("hemant@gmail.com", deleted.get().getEmail());
+        assertNotNull(deleted.get().getCreatedAt());
+        assertFalse(customerRepository.findByMobileNumber(savedCustomerDetails.getMobileNumber()).isPresent());
+    }
+    @Test
     void DeleteById_should_delete_customer(){
         // Given
         Customer savedCustomerDetails = customerRepository.save(customer);
@@ -66,4 +199,20 @@ public class CustomerRepositoryTests
         Optional<Customer> deletedCustomer = customerRepository.findById(savedCustomerDetails.getCustomerId());
         assertFalse(deletedCustomer.isPresent());
     }
+
+    @Test
+    void flush_should_bump_version_of_changed_customer_only() {
+        // Given
+        Customer savedCustomerDetails = customerRepository.saveAndFlush(customer);
+        Long initialVersion = savedCustomerDetails.getVersion();
+        // When
+        CustomerWithAccount current = customerRepository.findCustomerWithAccountByMobileNumber("8378387204").orElseThrow();
+        current.customer().setEmail("hemant@bod.com");
+        customerRepository.flush();
+        // Then
+        assertEquals(0L, initialVersion);
+        assertEquals(1L, current.customer().getVersion());
+        assertNull(current.account());
+        assertEquals(1L, customerRepository.findCustomerAccountsByMobileNumber("8378387204").orElseThrow().customerVersion());
+    }
 }
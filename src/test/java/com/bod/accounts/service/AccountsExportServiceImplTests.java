@@ -0,0 +1,64 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.projection.CustomerAccountsView;
+import com.bod.accounts.repository.CustomerRepository;
+import com.bod.accounts.service.impl.AccountsExportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AccountsExportServiceImplTests {
+    @Mock
+    private CustomerRepository customerRepository;
+
+    private AccountsExportServiceImpl accountsExportService;
+
+    @BeforeEach
+    void setUp() {
+        accountsExportService = new AccountsExportServiceImpl(customerRepository, new ObjectMapper());
+        when(customerRepository.streamAllCustomerAccounts()).thenReturn(Stream.of(
+                new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                        1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L),
+                new CustomerAccountsView(7L, "No \"Account\"", "noaccount@gmail.com", "9278091702",
+                        null, null, null, 0L, null)));
+    }
+
+    @Test
+    void testExportAccounts_Ndjson() throws Exception {
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        accountsExportService.exportAccounts(ExportFormat.NDJSON, outputStream);
+
+        // Assert
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"name\":\"Hemant\",\"email\":\"hemantraghav@gmail.com\",\"mobileNumber\":\"9278091701\","
+                + "\"accountsDto\":{\"accountNumber\":1191861191,\"accountType\":\"Savings\","
+                + "\"branchAddress\":\"Bank of Delhi, Connaught place new delhi\",\"version\":0},\"version\":0}", lines[0]);
+        assertTrue(lines[1].endsWith("\"accountsDto\":null,\"version\":0}"));
+    }
+
+    @Test
+    void testExportAccounts_Csv() throws Exception {
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        accountsExportService.exportAccounts(ExportFormat.CSV, outputStream);
+
+        // Assert
+        assertEquals("name,email,mobileNumber,accountNumber,accountType,branchAddress\n"
+                + "Hemant,hemantraghav@gmail.com,9278091701,1191861191,Savings,\"Bank of Delhi, Connaught place new delhi\"\n"
+                + "\"No \"\"Account\"\"\",noaccount@gmail.com,9278091702,,,\n",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -1,26 +1,50 @@
 package com.bod.accounts.service;
 
 import com.bod.accounts.dto.AccountsDto;
+import com.bod.accounts.dto.AccountsPatchDto;
+import com.bod.accounts.dto.AccountsPageDto;
+import com.bod.accounts.dto.BatchFetchResponseDto;
+import com.bod.accounts.dto.BatchResponseDto;
 import com.bod.accounts.dto.CustomerDto;
+import com.bod.accounts.dto.CustomerPatchDto;
 import com.bod.accounts.entity.Accounts;
 import com.bod.accounts.entity.Customer;
 import com.bod.accounts.exception.CustomerAlreadyExistsException;
+import com.bod.accounts.exception.InvalidPageTokenException;
 import com.bod.accounts.exception.ResourceNotFoundException;
+import com.bod.accounts.exception.VersionConflictException;
+import com.bod.accounts.journal.AccountChange;
+import com.bod.accounts.projection.CustomerAccountIds;
+import com.bod.accounts.projection.CustomerAccountsView;
+import com.bod.accounts.projection.CustomerWithAccount;
 import com.bod.accounts.repository.AccountsRepository;
 import com.bod.accounts.repository.CustomerRepository;
 import com.bod.accounts.service.impl.AccountsServiceImpl;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +53,26 @@ public class AccountsServiceImplTests {
     private AccountsRepository accountsRepository;
     @Mock
     private CustomerRepository customerRepository;
+    @Mock
+    private CacheManager cacheManager;
+    @Mock
+    private Cache cache;
+    @Mock
+    private Validator validator;
+    @Mock
+    private IAccountNumberGenerator accountNumberGenerator;
+    @Mock
+    private AuditorAware<String> auditorAware;
+    @Mock
+    private IMobileNumberFilter mobileNumberFilter;
+    @Mock
+    private IMobileNumberIndex mobileNumberIndex;
+    @Mock
+    private IChangeJournal changeJournal;
+    @Mock
+    private IReadYourWrites readYourWrites;
+    @Mock
+    private IFetchCoalescer fetchCoalescer;
     @InjectMocks
     private AccountsServiceImpl accountsService;
 
@@ -60,38 +104,88 @@ public class AccountsServiceImplTests {
         accounts.setAccountNumber(1191861191L);
         accounts.setAccountType("Savings");
         accounts.setBranchAddress("Bank of Delhi, Connaught place new delhi");
+
+        lenient().when(readYourWrites.read(anyCollection(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        lenient().when(fetchCoalescer.load(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
     }
 
     @Test
     void testCreateAccount_CustomerNotExists() {
         // Arrange
-        when(customerRepository.findByMobileNumber(anyString())).thenReturn(Optional.empty());
-        when(customerRepository.save(any(Customer.class))).thenReturn(customer);
+        when(auditorAware.getCurrentAuditor()).thenReturn(Optional.of("ACCOUNTS_MS"));
+        when(accountNumberGenerator.nextAccountNumber()).thenReturn(1191861191L);
+        when(customerRepository.insertCustomerWithAccount(any(Customer.class), any(Accounts.class)))
+                .thenReturn(Optional.of(6L));
 
         // Act
         accountsService.createAccount(customerDto);
 
         // Assert
-        verify(customerRepository, times(1)).save(any(Customer.class));
-        verify(accountsRepository, times(1)).save(any(Accounts.class));
+        ArgumentCaptor<Accounts> account = ArgumentCaptor.forClass(Accounts.class);
+        verify(customerRepository, times(1)).insertCustomerWithAccount(any(Customer.class), account.capture());
+        verify(customerRepository, never()).findByMobileNumber(anyString());
+        verify(mobileNumberFilter).registered("9278091701");
+        assertEquals(1191861191L, account.getValue().getAccountNumber());
+        assertEquals("ACCOUNTS_MS", account.getValue().getCreatedBy());
     }
 
     @Test
     void testCreateAccount_CustomerAlreadyExists() {
         // Arrange
-        when(customerRepository.findByMobileNumber(anyString())).thenReturn(Optional.of(customer));
+        when(auditorAware.getCurrentAuditor()).thenReturn(Optional.of("ACCOUNTS_MS"));
+        when(customerRepository.insertCustomerWithAccount(any(Customer.class), any(Accounts.class)))
+                .thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(CustomerAlreadyExistsException.class, () -> accountsService.createAccount(customerDto));
-        verify(customerRepository, times(1)).findByMobileNumber(anyString());
+        verify(customerRepository, never()).findByMobileNumber(anyString());
         verify(accountsRepository, times(0)).save(any(Accounts.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreateAccounts_ReportsEveryItem() {
+        // Arrange
+        CustomerDto registeredDto = new CustomerDto("Registered", "registered@gmail.com", "9278091702", null, null);
+        CustomerDto repeatedDto = new CustomerDto("Hemant", "hemantraghav@gmail.com", "9278091701", null, null);
+        CustomerDto invalidDto = new CustomerDto("Hem", "hemantraghav@gmail.com", "9278091703", null, null);
+        ConstraintViolation<CustomerDto> violation = mock(ConstraintViolation.class);
+        when(violation.getMessage()).thenReturn("The length of the customer name should be between 5 and 30");
+        when(validator.validate(any(CustomerDto.class))).thenReturn(Set.of());
+        when(validator.validate(invalidDto)).thenReturn(Set.of(violation));
+        when(auditorAware.getCurrentAuditor()).thenReturn(Optional.of("ACCOUNTS_MS"));
+        when(accountNumberGenerator.nextAccountNumber()).thenReturn(1191861191L, 1191861209L);
+        // 9278091702 is registered by another request before the insert, which skips it
+        when(customerRepository.insertCustomersWithAccounts(anyList(), anyList(), any(), eq("ACCOUNTS_MS")))
+                .thenReturn(List.of(new CustomerAccountIds("9278091701", 6L, 1191861191L)));
+
+        // Act
+        List<BatchResponseDto> results = accountsService.createAccounts(
+                List.of(customerDto, registeredDto, repeatedDto, invalidDto));
+
+        // Assert
+        assertEquals(List.of("201", "400", "400", "400"),
+                results.stream().map(BatchResponseDto::getStatusCode).toList());
+        assertEquals("Customer already registered with given mobileNumber 9278091702", results.get(1).getStatusMsg());
+        assertEquals("The length of the customer name should be between 5 and 30", results.get(3).getStatusMsg());
+        verify(customerRepository, times(1)).insertCustomersWithAccounts(
+                argThat(customers -> ((List<Customer>) customers).size() == 2),
+                argThat(accounts -> ((List<Accounts>) accounts).size() == 2), any(), eq("ACCOUNTS_MS"));
+        verify(customerRepository, never()).saveAll(anyList());
+        verify(mobileNumberIndex, times(1)).put(any(CustomerAccountIds.class));
+        verify(mobileNumberIndex).put(new CustomerAccountIds("9278091701", 6L, 1191861191L));
+        verify(readYourWrites, never()).written("9278091702");
+        verify(changeJournal, times(2)).record(any(AccountChange.class));
+    }
+
     @Test
     void testFetchAccount() {
         // Arrange
-        when(customerRepository.findByMobileNumber(anyString())).thenReturn(Optional.of(customer));
-        when(accountsRepository.findByCustomerId(anyLong())).thenReturn(Optional.of(accounts));
+        CustomerAccountsView view = new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L);
+        when(customerRepository.findCustomerAccountsByMobileNumber(anyString())).thenReturn(Optional.of(view));
 
         // Act
         CustomerDto result = accountsService.fetchAccount("9278091701");
@@ -100,25 +194,230 @@ public class AccountsServiceImplTests {
         assertNotNull(result);
         assertEquals("Hemant", result.getName());
         assertEquals("Savings", result.getAccountsDto().getAccountType());
-        verify(customerRepository, times(1)).findByMobileNumber(anyString());
-        verify(accountsRepository, times(1)).findByCustomerId(anyLong());
+        verify(customerRepository, times(1)).findCustomerAccountsByMobileNumber(anyString());
+        verify(customerRepository, times(0)).findByMobileNumber(anyString());
+        verify(accountsRepository, times(0)).findByCustomerId(anyLong());
+    }
+
+    @Test
+    void testFetchAccount_CachesTheLookup() {
+        // Arrange
+        CustomerAccountsView view = new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L);
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        when(customerRepository.findCustomerAccountsByMobileNumber("9278091701")).thenReturn(Optional.of(view));
+
+        // Act
+        CustomerDto result = accountsService.fetchAccount("9278091701");
+
+        // Assert
+        verify(cache).put("9278091701", result);
+        verify(cache, never()).evict(any());
+    }
+
+    @Test
+    void testFetchAccount_WriteDuringLookupDropsTheCachedResult() {
+        // Arrange
+        CustomerAccountsView view = new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L);
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        when(customerRepository.findCustomerAccountsByMobileNumber("9278091701")).thenReturn(Optional.of(view));
+        when(customerRepository.findByMobileNumber("9278091701")).thenReturn(Optional.of(customer));
+        // the customer is deleted after the lookup read it, before its result is cached
+        doAnswer(invocation -> {
+            Object read = invocation.<Supplier<?>>getArgument(1).get();
+            accountsService.deleteAccount("9278091701");
+            return read;
+        }).when(fetchCoalescer).load(anyString(), any());
+
+        // Act
+        CustomerDto result = accountsService.fetchAccount("9278091701");
+
+        // Assert
+        InOrder inOrder = inOrder(cache);
+        inOrder.verify(cache).evict("9278091701");
+        inOrder.verify(cache).put("9278091701", result);
+        inOrder.verify(cache).evict("9278091701");
     }
 
     @Test
     void testFetchAccount_CustomerNotFound() {
         // Arrange
-        when(customerRepository.findByMobileNumber(anyString())).thenReturn(Optional.empty());
+        when(customerRepository.findCustomerAccountsByMobileNumber(anyString())).thenReturn(Optional.empty());
 
         // Act & Assert
-        assertThrows(ResourceNotFoundException.class, () -> accountsService.fetchAccount("1234567890"));
-        verify(customerRepository, times(1)).findByMobileNumber(anyString());
-        verify(accountsRepository, times(0)).findByCustomerId(anyLong());
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class,
+                () -> accountsService.fetchAccount("1234567890"));
+        assertEquals("Customer not found with the given input data mobileNumber : '1234567890'", exception.getMessage());
+        assertEquals(0, exception.getStackTrace().length);
+        verify(customerRepository, times(1)).findCustomerAccountsByMobileNumber(anyString());
+    }
+
+    @Test
+    void testFetchAccount_AccountNotFound() {
+        // Arrange
+        CustomerAccountsView view = new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                null, null, null, 0L, 0L);
+        when(customerRepository.findCustomerAccountsByMobileNumber(anyString())).thenReturn(Optional.of(view));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> accountsService.fetchAccount("9278091701"));
+    }
+
+    @Test
+    void testFetchAccount_DefinitelyAbsentSkipsDatabase() {
+        // Arrange
+        when(mobileNumberFilter.isDefinitelyAbsent("9278091701")).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> accountsService.fetchAccount("9278091701"));
+        assertThrows(ResourceNotFoundException.class, () -> accountsService.deleteAccount("9278091701"));
+        verifyNoInteractions(customerRepository, accountsRepository);
+    }
+
+    @Test
+    void testFetchAccounts_OneQueryForTheUncached() {
+        // Arrange
+        CustomerDto cached = new CustomerDto("Cached", "cached@gmail.com", "9278091702", null, 0L);
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        when(cache.get(anyString(), eq(CustomerDto.class)))
+                .thenAnswer(invocation -> "9278091702".equals(invocation.getArgument(0)) ? cached : null);
+        when(mobileNumberFilter.isDefinitelyAbsent(anyString()))
+                .thenAnswer(invocation -> "9278091704".equals(invocation.getArgument(0)));
+        when(customerRepository.findCustomerAccountsByMobileNumberIn(Set.of("9278091701", "9278091703"))).thenReturn(List.of(
+                new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                        1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L),
+                new CustomerAccountsView(7L, "NoAccount", "noaccount@gmail.com", "9278091703",
+                        null, null, null, 0L, null)));
+
+        // Act
+        BatchFetchResponseDto result = accountsService.fetchAccounts(
+                List.of("9278091703", "9278091701", "9278091704", "9278091702", "9278091701"));
+
+        // Assert
+        assertEquals(List.of("9278091701", "9278091702"),
+                result.getAccounts().stream().map(CustomerDto::getMobileNumber).toList());
+        assertEquals(1191861191L, result.getAccounts().get(0).getAccountsDto().getAccountNumber());
+        assertSame(cached, result.getAccounts().get(1));
+        assertEquals(List.of("9278091703", "9278091704"), result.getMissingMobileNumbers());
+        verify(customerRepository, times(1)).findCustomerAccountsByMobileNumberIn(anyCollection());
+        verify(cache, never()).put(any(), any());
+    }
+
+    @Test
+    void testFetchAccounts_AllCachedSkipsDatabase() {
+        // Arrange
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        when(cache.get("9278091701", CustomerDto.class))
+                .thenReturn(new CustomerDto("Hemant", "hemantraghav@gmail.com", "9278091701", null, 0L));
+
+        // Act
+        BatchFetchResponseDto result = accountsService.fetchAccounts(List.of("9278091701"));
+
+        // Assert
+        assertEquals(1, result.getAccounts().size());
+        assertTrue(result.getMissingMobileNumbers().isEmpty());
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    void testListAccounts_SeeksPastTheToken() {
+        // Arrange
+        when(accountsRepository.findPageByBranchAddress("Delhi", 0L, Limit.of(3)))
+                .thenReturn(List.of(account(11L), account(12L), account(13L)));
+        when(accountsRepository.findPageByBranchAddress("Delhi", 12L, Limit.of(3)))
+                .thenReturn(List.of(account(13L)));
+
+        // Act
+        AccountsPageDto first = accountsService.listAccounts("Delhi", null, null, 2);
+        AccountsPageDto second = accountsService.listAccounts("Delhi", "", first.getNextPageToken(), 2);
+
+        // Assert
+        assertEquals(List.of(11L, 12L), first.getAccounts().stream().map(AccountsDto::getAccountNumber).toList());
+        assertNotNull(first.getNextPageToken());
+        assertEquals(List.of(13L), second.getAccounts().stream().map(AccountsDto::getAccountNumber).toList());
+        assertNull(second.getNextPageToken());
+    }
+
+    @Test
+    void testListAccounts_InvalidToken() {
+        // Act & Assert
+        assertThrows(InvalidPageTokenException.class, () -> accountsService.listAccounts("Delhi", "Savings", "not a token", 2));
+        assertThrows(InvalidPageTokenException.class, () -> accountsService.listAccounts("Delhi", "Savings", "LTU", 2));
+        verifyNoInteractions(accountsRepository);
+    }
+
+    private static Accounts account(Long accountNumber) {
+        Accounts account = new Accounts();
+        account.setAccountNumber(accountNumber);
+        account.setAccountType("Savings");
+        account.setBranchAddress("Delhi");
+        return account;
+    }
+
+    @Test
+    void testFetchAccount_IndexedByCustomerId() {
+        // Arrange
+        when(mobileNumberIndex.find("9278091701"))
+                .thenReturn(Optional.of(new CustomerAccountIds("9278091701", 6L, 1191861191L)));
+        when(customerRepository.findCustomerAccountsByCustomerId(6L)).thenReturn(Optional.of(
+                new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                        1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L)));
+
+        // Act
+        CustomerDto result = accountsService.fetchAccount("9278091701");
+
+        // Assert
+        assertEquals(1191861191L, result.getAccountsDto().getAccountNumber());
+        verify(customerRepository, never()).findCustomerAccountsByMobileNumber(anyString());
+    }
+
+    @Test
+    void testFetchAccount_StaleIndexFallsBackToMobileNumber() {
+        // Arrange
+        when(mobileNumberIndex.find("9278091701"))
+                .thenReturn(Optional.of(new CustomerAccountIds("9278091701", 6L, 1191861191L)));
+        when(customerRepository.findCustomerAccountsByCustomerId(6L)).thenReturn(Optional.of(
+                new CustomerAccountsView(6L, "Hemant", "hemantraghav@gmail.com", "9278091799",
+                        1191861191L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L)));
+        when(customerRepository.findCustomerAccountsByMobileNumber("9278091701")).thenReturn(Optional.of(
+                new CustomerAccountsView(7L, "Hemant", "hemantraghav@gmail.com", "9278091701",
+                        1191861192L, "Savings", "Bank of Delhi, Connaught place new delhi", 0L, 0L)));
+
+        // Act
+        CustomerDto result = accountsService.fetchAccount("9278091701");
+
+        // Assert
+        assertEquals(1191861192L, result.getAccountsDto().getAccountNumber());
+    }
+
+    @Test
+    void testDeleteAccount_IndexedSkipsLookup() {
+        // Arrange
+        when(mobileNumberIndex.find("9278091701"))
+                .thenReturn(Optional.of(new CustomerAccountIds("9278091701", 6L, 1191861191L)));
+        when(customerRepository.deleteByCustomerIdAndMobileNumber(6L, "9278091701")).thenReturn(Optional.of(customer));
+
+        // Act
+        boolean result = accountsService.deleteAccount("9278091701");
+
+        // Assert
+        assertTrue(result);
+        verify(customerRepository, never()).findByMobileNumber(anyString());
+        verify(accountsRepository).deleteByCustomerId(6L);
+        verify(mobileNumberIndex).remove("9278091701");
+        ArgumentCaptor<AccountChange> change = ArgumentCaptor.forClass(AccountChange.class);
+        verify(changeJournal).record(change.capture());
+        assertEquals("DELETE", change.getValue().operation());
+        assertEquals(6L, change.getValue().entityId());
+        assertEquals("Hemant", change.getValue().before().get("name"));
+        assertEquals("hemantraghav@gmail.com", change.getValue().before().get("email"));
     }
 
     @Test
     void testUpdateAccount_ValidUpdate() {
         // Arrange
-        AccountsDto updatedAccountsDto = new AccountsDto(1191861191L, "Current", "Pune, Maharashtra");
+        AccountsDto updatedAccountsDto = new AccountsDto(1191861191L, "Current", "Pune, Maharashtra", null);
         customerDto.setAccountsDto(updatedAccountsDto);
         when(accountsRepository.findById(anyLong())).thenReturn(Optional.of(accounts));
         when(accountsRepository.save(any(Accounts.class))).thenReturn(accounts);
@@ -134,10 +433,98 @@ public class AccountsServiceImplTests {
         verify(customerRepository, times(1)).save(any(Customer.class));
     }
 
+    @Test
+    void testUpdateAccount_RecordsBeforeAndAfter() {
+        // Arrange
+        customerDto.setAccountsDto(new AccountsDto(1191861191L, "Current", "Pune, Maharashtra", null));
+        when(accountsRepository.findById(anyLong())).thenReturn(Optional.of(accounts));
+        when(accountsRepository.save(any(Accounts.class))).thenReturn(accounts);
+        when(customerRepository.findById(anyLong())).thenReturn(Optional.of(customer));
+        when(customerRepository.save(any(Customer.class))).thenReturn(customer);
+        ArgumentCaptor<AccountChange> changes = ArgumentCaptor.forClass(AccountChange.class);
+
+        // Act
+        accountsService.updateAccount(customerDto);
+
+        // Assert
+        verify(changeJournal, times(2)).record(changes.capture());
+        AccountChange accountChange = changes.getAllValues().get(0);
+        assertEquals(AccountChange.ACCOUNT, accountChange.entity());
+        assertEquals(1191861191L, accountChange.entityId());
+        assertEquals("UPDATE", accountChange.operation());
+        assertEquals("Savings", accountChange.before().get("accountType"));
+        assertEquals("Current", accountChange.after().get("accountType"));
+        assertEquals(AccountChange.CUSTOMER, changes.getAllValues().get(1).entity());
+    }
+
+    @Test
+    void testUpdateAccount_EvictsCachedAccount() {
+        // Arrange
+        AccountsDto updatedAccountsDto = new AccountsDto(1191861191L, "Current", "Pune, Maharashtra", null);
+        customerDto.setAccountsDto(updatedAccountsDto);
+        customerDto.setMobileNumber("9278091702");
+        when(accountsRepository.findById(anyLong())).thenReturn(Optional.of(accounts));
+        when(accountsRepository.save(any(Accounts.class))).thenReturn(accounts);
+        when(customerRepository.findById(anyLong())).thenReturn(Optional.of(customer));
+        when(customerRepository.save(any(Customer.class))).thenReturn(customer);
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+
+        // Act
+        accountsService.updateAccount(customerDto);
+
+        // Assert
+        verify(cache, times(1)).evict("9278091701");  // previous mobile number
+        verify(cache, times(1)).evict("9278091702");  // updated mobile number
+        verify(readYourWrites, times(1)).written("9278091701");
+        verify(readYourWrites, times(1)).written("9278091702");
+    }
+
+    @Test
+    void testUpdateAccount_EvictsCachedAccountAfterCommit() {
+        // Arrange
+        customerDto.setAccountsDto(new AccountsDto(1191861191L, "Current", "Pune, Maharashtra", null));
+        when(accountsRepository.findById(anyLong())).thenReturn(Optional.of(accounts));
+        when(accountsRepository.save(any(Accounts.class))).thenReturn(accounts);
+        when(customerRepository.findById(anyLong())).thenReturn(Optional.of(customer));
+        when(customerRepository.save(any(Customer.class))).thenReturn(customer);
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            accountsService.updateAccount(customerDto);
+            verify(cache, never()).evict(any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Assert
+            verify(cache, atLeastOnce()).evict("9278091701");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testUpdateAccount_MobileNumberTaken() {
+        // Arrange
+        customerDto.setAccountsDto(new AccountsDto(1191861191L, "Current", "Pune, Maharashtra", null));
+        customerDto.setMobileNumber("9278091702");
+        when(accountsRepository.findById(anyLong())).thenReturn(Optional.of(accounts));
+        when(accountsRepository.save(any(Accounts.class))).thenReturn(accounts);
+        when(customerRepository.findById(anyLong())).thenReturn(Optional.of(customer));
+        when(customerRepository.save(any(Customer.class))).thenReturn(customer);
+        doThrow(new DataIntegrityViolationException("customer_mobile_number_uk")).when(customerRepository).flush();
+
+        // Act & Assert
+        CustomerAlreadyExistsException e = assertThrows(CustomerAlreadyExistsException.class,
+                () -> accountsService.updateAccount(customerDto));
+        assertEquals("Customer already registered with given mobileNumber 9278091702", e.getMessage());
+        verify(mobileNumberIndex, never()).remove(anyString());
+        verify(mobileNumberFilter, never()).deregistered(anyString());
+    }
+
     @Test
     void testUpdateAccount_AccountNotFound() {
         // Arrange
-        AccountsDto updatedAccountsDto = new AccountsDto(1000000000L, "CURRENT", "New Address");
+        AccountsDto updatedAccountsDto = new AccountsDto(1000000000L, "CURRENT", "New Address", null);
         customerDto.setAccountsDto(updatedAccountsDto);
         when(accountsRepository.findById(anyLong())).thenReturn(Optional.empty());
 
@@ -147,12 +534,93 @@ public class AccountsServiceImplTests {
         verify(customerRepository, times(0)).save(any(Customer.class)); // Account not updated
     }
 
+    @Test
+    void testPatchAccount_AppliesOnlyGivenFields() {
+        // Arrange
+        customer.setVersion(3L);
+        accounts.setVersion(1L);
+        when(customerRepository.findCustomerWithAccountByMobileNumber("9278091701"))
+                .thenReturn(Optional.of(new CustomerWithAccount(customer, accounts)));
+        CustomerPatchDto patch = new CustomerPatchDto(null, "hemant@bod.com", null, 3L,
+                new AccountsPatchDto(null, "Pune, Maharashtra", 1L));
+
+        // Act
+        CustomerDto result = accountsService.patchAccount("9278091701", patch);
+
+        // Assert
+        assertEquals("Hemant", result.getName());
+        assertEquals("hemant@bod.com", result.getEmail());
+        assertEquals("Savings", result.getAccountsDto().getAccountType());
+        assertEquals("Pune, Maharashtra", result.getAccountsDto().getBranchAddress());
+        verify(customerRepository).flush();
+        verify(customerRepository, never()).save(any(Customer.class));
+        verify(changeJournal, times(2)).record(any(AccountChange.class));
+        verify(mobileNumberIndex, never()).remove(anyString());
+    }
+
+    @Test
+    void testPatchAccount_EvictsCachedAccountAfterCommit() {
+        // Arrange
+        customer.setVersion(3L);
+        when(customerRepository.findCustomerWithAccountByMobileNumber("9278091701"))
+                .thenReturn(Optional.of(new CustomerWithAccount(customer, accounts)));
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        CustomerPatchDto patch = new CustomerPatchDto(null, "hemant@bod.com", null, 3L, null);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            accountsService.patchAccount("9278091701", patch);
+            verify(cache, never()).evict(any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Assert
+            verify(cache, atLeastOnce()).evict("9278091701");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testDeleteAccount_EvictsCachedAccountAfterCommit() {
+        // Arrange
+        when(mobileNumberIndex.find("9278091701"))
+                .thenReturn(Optional.of(new CustomerAccountIds("9278091701", 6L, 1191861191L)));
+        when(customerRepository.deleteByCustomerIdAndMobileNumber(6L, "9278091701")).thenReturn(Optional.of(customer));
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            accountsService.deleteAccount("9278091701");
+            verify(cache, never()).evict(any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Assert
+            verify(cache, times(1)).evict("9278091701");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testPatchAccount_StaleVersion() {
+        // Arrange
+        customer.setVersion(4L);
+        when(customerRepository.findCustomerWithAccountByMobileNumber("9278091701"))
+                .thenReturn(Optional.of(new CustomerWithAccount(customer, accounts)));
+        CustomerPatchDto patch = new CustomerPatchDto("Hemant Raghav", null, null, 3L, null);
+
+        // Act & Assert
+        assertThrows(VersionConflictException.class, () -> accountsService.patchAccount("9278091701", patch));
+        assertEquals("Hemant", customer.getName());
+        verify(customerRepository, never()).flush();
+    }
+
     @Test
     void testDeleteAccount_Success() {
         // Arrange
         // Mock that the customer is found by the mobile number
         when(customerRepository.findByMobileNumber(anyString())).thenReturn(Optional.of(customer));
-        doNothing().when(accountsRepository).deleteByCustomerId(anyLong());  // Mock void delete method
+        when(accountsRepository.deleteByCustomerId(anyLong())).thenReturn(List.of());  // Mock delete method
         doNothing().when(customerRepository).deleteById(anyLong());  // Mock void delete method
 
         // Act
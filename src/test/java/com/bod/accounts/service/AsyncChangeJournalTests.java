@@ -0,0 +1,162 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.AuditingTestConfig;
+import com.bod.accounts.entity.Accounts;
+import com.bod.accounts.journal.AccountChange;
+import com.bod.accounts.service.impl.AsyncChangeJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import(AuditingTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AsyncChangeJournalTests {
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void stop_should_write_every_recorded_change() {
+        // Given
+        long accountNumber = 9_000_000_000L + System.nanoTime() % 1_000_000_000L;
+        AsyncChangeJournal journal = new AsyncChangeJournal(dataSource, new ObjectMapper().findAndRegisterModules(),
+                () -> Optional.of("test"), new SimpleMeterRegistry(), 4, 2, Duration.ofMillis(50), Duration.ofSeconds(10),
+                Duration.ofSeconds(1));
+        Accounts account = new Accounts();
+        account.setCustomerId(6L);
+        account.setAccountNumber(accountNumber);
+        account.setAccountType("Savings");
+        account.setBranchAddress("Pune, Maharashtra");
+        Map<String, Object> before = AccountChange.snapshot(account);
+        account.setAccountType("Current");
+        journal.start();
+        // When
+        journal.record(AccountChange.ofAccount(null, before));
+        for (int i = 0; i < 10; i++) {
+            journal.record(AccountChange.ofAccount(before, AccountChange.snapshot(account)));
+        }
+        journal.record(AccountChange.ofAccount(AccountChange.snapshot(account), null));
+        journal.stop();
+        // Then
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT operation, before_values->>'accountType' AS before_type, "
+                + "after_values->>'accountType' AS after_type, changed_by FROM account_change_history "
+                + "WHERE entity = 'ACCOUNT' AND entity_id = ? ORDER BY change_id", accountNumber);
+        assertEquals(12, rows.size());
+        assertEquals("INSERT", rows.get(0).get("operation"));
+        assertNull(rows.get(0).get("before_type"));
+        assertEquals("Savings", rows.get(1).get("before_type"));
+        assertEquals("Current", rows.get(1).get("after_type"));
+        assertEquals("DELETE", rows.get(11).get("operation"));
+        assertEquals("test", rows.get(11).get("changed_by"));
+    }
+
+    @Test
+    void stop_should_set_aside_a_change_that_cannot_be_written_and_write_the_rest() {
+        // Given
+        long accountNumber = 9_000_000_000L + System.nanoTime() % 1_000_000_000L;
+        AtomicReference<String> auditor = new AtomicReference<>("test");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncChangeJournal journal = new AsyncChangeJournal(dataSource, new ObjectMapper().findAndRegisterModules(),
+                () -> Optional.of(auditor.get()), meterRegistry, 16, 10, Duration.ofMillis(50), Duration.ofSeconds(10),
+                Duration.ofSeconds(1));
+        Accounts account = new Accounts();
+        account.setAccountNumber(accountNumber);
+        account.setCustomerId(6L);
+        journal.start();
+        // When
+        journal.record(AccountChange.ofAccount(null, AccountChange.snapshot(account)));
+        auditor.set("an auditor name longer than its column");
+        journal.record(AccountChange.ofAccount(AccountChange.snapshot(account), AccountChange.snapshot(account)));
+        auditor.set("test");
+        journal.record(AccountChange.ofAccount(AccountChange.snapshot(account), null));
+        journal.stop();
+        // Then
+        List<String> operations = jdbcTemplate.queryForList("SELECT operation FROM account_change_history "
+                + "WHERE entity = 'ACCOUNT' AND entity_id = ? ORDER BY change_id", String.class, accountNumber);
+        assertEquals(List.of("INSERT", "DELETE"), operations);
+        assertEquals(1, meterRegistry.get("accounts.journal.dead.letter").counter().count());
+    }
+
+    @Test
+    void stop_should_set_aside_a_change_failing_without_a_sql_state() throws Exception {
+        // Given
+        DataSource failing = mock(DataSource.class);
+        when(failing.getConnection()).thenThrow(new SQLException("client-side failure"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncChangeJournal journal = new AsyncChangeJournal(failing, new ObjectMapper().findAndRegisterModules(),
+                () -> Optional.of("test"), meterRegistry, 4, 2, Duration.ofMillis(10), Duration.ofSeconds(10),
+                Duration.ofSeconds(1));
+        Accounts account = new Accounts();
+        account.setAccountNumber(9_000_000_000L);
+        account.setCustomerId(6L);
+        journal.start();
+        // When
+        journal.record(AccountChange.ofAccount(null, AccountChange.snapshot(account)));
+        journal.record(AccountChange.ofAccount(AccountChange.snapshot(account), null));
+        long start = System.nanoTime();
+        journal.stop();
+        // Then
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(2, meterRegistry.get("accounts.journal.dead.letter").counter().count());
+    }
+
+    @Test
+    void record_should_stop_waiting_for_room_after_the_put_timeout() throws Exception {
+        // Given
+        long accountNumber = 9_000_000_000L + System.nanoTime() % 1_000_000_000L;
+        CountDownLatch release = new CountDownLatch(1);
+        DataSource stalled = mock(DataSource.class);
+        when(stalled.getConnection()).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return dataSource.getConnection();
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncChangeJournal journal = new AsyncChangeJournal(stalled, new ObjectMapper().findAndRegisterModules(),
+                () -> Optional.of("test"), meterRegistry, 1, 1, Duration.ofMillis(10), Duration.ofSeconds(10),
+                Duration.ofMillis(100));
+        Accounts account = new Accounts();
+        account.setAccountNumber(accountNumber);
+        account.setCustomerId(6L);
+        journal.start();
+        // When
+        journal.record(AccountChange.ofAccount(null, AccountChange.snapshot(account)));
+        Thread.sleep(100);
+        journal.record(AccountChange.ofAccount(AccountChange.snapshot(account), AccountChange.snapshot(account)));
+        long start = System.nanoTime();
+        journal.record(AccountChange.ofAccount(AccountChange.snapshot(account), null));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+        journal.stop();
+        // Then
+        assertTrue(waitedMillis < 1000);
+        assertEquals(1, meterRegistry.get("accounts.journal.dead.letter").counter().count());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM account_change_history "
+                + "WHERE entity = 'ACCOUNT' AND entity_id = ?", Integer.class, accountNumber));
+    }
+
+}
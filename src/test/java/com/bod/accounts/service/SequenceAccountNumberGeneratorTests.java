@@ -0,0 +1,80 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.service.impl.SequenceAccountNumberGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SequenceAccountNumberGeneratorTests {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private void reserveBlocksOf(long incrementBy, long... starts) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        Long[] rest = new Long[starts.length - 1];
+        for (int i = 1; i < starts.length; i++) {
+            rest[i - 1] = starts[i];
+        }
+        when(resultSet.getLong(1)).thenReturn(starts[0], rest);
+        when(resultSet.getLong(2)).thenReturn(incrementBy);
+        when(jdbcTemplate.queryForObject(anyString(), ArgumentMatchers.<RowMapper<Object>>any()))
+                .thenAnswer(invocation -> ((RowMapper<?>) invocation.getArgument(1)).mapRow(resultSet, 0));
+    }
+
+    private static boolean passesLuhn(long number) {
+        int sum = 0;
+        boolean doubled = false;
+        for (long rest = number; rest > 0; rest /= 10) {
+            int digit = (int) (rest % 10);
+            if (doubled) {
+                digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+
+    @Test
+    void nextAccountNumber_should_reserve_one_block_per_increment() throws Exception {
+        // Given
+        reserveBlocksOf(100, 190000000L, 190000100L);
+        SequenceAccountNumberGenerator generator = new SequenceAccountNumberGenerator(jdbcTemplate, false);
+        // When
+        Set<Long> numbers = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            numbers.add(generator.nextAccountNumber());
+        }
+        // Then
+        assertEquals(150, numbers.size());
+        assertTrue(numbers.contains(1900000000L));
+        assertTrue(numbers.contains(1900001490L));
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), ArgumentMatchers.<RowMapper<Object>>any());
+    }
+
+    @Test
+    void nextAccountNumber_should_append_luhn_check_digit() throws Exception {
+        // Given
+        reserveBlocksOf(100, 190000000L);
+        SequenceAccountNumberGenerator generator = new SequenceAccountNumberGenerator(jdbcTemplate, true);
+        // When & Then
+        for (int i = 0; i < 100; i++) {
+            long accountNumber = generator.nextAccountNumber();
+            assertEquals(10, Long.toString(accountNumber).length());
+            assertTrue(passesLuhn(accountNumber));
+        }
+    }
+}
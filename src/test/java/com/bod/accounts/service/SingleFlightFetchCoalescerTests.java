@@ -0,0 +1,141 @@
+package com.bod.accounts.service;
+
+import com.bod.accounts.exception.ResourceNotFoundException;
+import com.bod.accounts.service.impl.SingleFlightFetchCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightFetchCoalescerTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlightFetchCoalescer coalescer;
+    private AtomicInteger loads;
+    private CountDownLatch running;
+    private CountDownLatch finish;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new SingleFlightFetchCoalescer(meterRegistry, true);
+        loads = new AtomicInteger();
+        running = new CountDownLatch(1);
+        finish = new CountDownLatch(1);
+    }
+
+    private <T> Supplier<T> slow(Supplier<T> result) {
+        return () -> {
+            loads.incrementAndGet();
+            running.countDown();
+            try {
+                finish.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result.get();
+        };
+    }
+
+    private List<CompletableFuture<String>> followers(int count) {
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            followers.add(CompletableFuture.supplyAsync(() -> coalescer.load("9278091701", () -> {
+                loads.incrementAndGet();
+                return "follower";
+            })));
+        }
+        return followers;
+    }
+
+    private void awaitFollowers(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("accounts.fetch.coalescing.calls").tag("role", "follower").counter().count() < count
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void load_should_share_one_running_load_between_concurrent_callers() throws Exception {
+        // Given
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(
+                () -> coalescer.load("9278091701", slow(() -> "leader")));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // When
+        List<CompletableFuture<String>> followers = followers(3);
+        awaitFollowers(3);
+        finish.countDown();
+        // Then
+        assertEquals("leader", leader.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<String> follower : followers) {
+            assertEquals("leader", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0.75, meterRegistry.get("accounts.fetch.coalescing.ratio").gauge().value());
+        assertEquals(3, meterRegistry.get("accounts.fetch.coalescing.wait").timer().count());
+    }
+
+    @Test
+    void load_should_run_again_once_the_previous_load_finished() {
+        // Given
+        coalescer.load("9278091701", () -> loads.incrementAndGet());
+        // When
+        int second = coalescer.load("9278091701", () -> loads.incrementAndGet());
+        // Then
+        assertEquals(2, second);
+        assertEquals(0, meterRegistry.get("accounts.fetch.coalescing.ratio").gauge().value());
+    }
+
+    @Test
+    void load_should_throw_the_leaders_exception_to_every_caller() throws Exception {
+        // Given
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> coalescer.load("9278091701",
+                slow(() -> {
+                    throw new ResourceNotFoundException("Customer", "mobileNumber", "9278091701");
+                })));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // When
+        List<CompletableFuture<String>> followers = followers(2);
+        awaitFollowers(2);
+        finish.countDown();
+        // Then
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ResourceNotFoundException.class, thrown.getCause());
+        for (CompletableFuture<String> follower : followers) {
+            thrown = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(ResourceNotFoundException.class, thrown.getCause());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void written_should_keep_later_callers_out_of_the_running_load() throws Exception {
+        // Given
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(
+                () -> coalescer.load("9278091701", slow(() -> "before write")));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // When
+        coalescer.written("9278091701");
+        String afterWrite = coalescer.load("9278091701", () -> {
+            loads.incrementAndGet();
+            return "after write";
+        });
+        finish.countDown();
+        // Then
+        assertEquals("after write", afterWrite);
+        assertEquals("before write", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+}